@@ -0,0 +1,38 @@
+package com.lmco.crt.jfr.recorder;
+
+import com.lmco.crt.jfr.AnalysisEvent;
+import com.lmco.crt.jfr.EventHandle;
+import com.lmco.crt.jfr.RecordedEvent;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.lmco.crt.Analysis")
+@Label("Analysis")
+@Category({"CRT", "Analysis"})
+@Description("Ingesting a classpath and computing the methods reachable from its entry points")
+public class AnalysisRecord extends jdk.jfr.Event implements EventHandle {
+
+    @Label("Classpath")
+    public String classpath;
+
+    @Label("Classes")
+    public int classes;
+
+    @Label("Methods")
+    public int methods;
+
+    @Label("Reachable Methods")
+    public int reachableMethods;
+
+    @Override
+    public void commit(RecordedEvent values) {
+        AnalysisEvent event = (AnalysisEvent) values;
+        classpath = event.classpath;
+        classes = event.classes;
+        methods = event.methods;
+        reachableMethods = event.reachableMethods;
+        commit();
+    }
+}
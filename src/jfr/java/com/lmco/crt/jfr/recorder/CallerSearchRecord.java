@@ -0,0 +1,36 @@
+package com.lmco.crt.jfr.recorder;
+
+import com.lmco.crt.jfr.CallerSearchEvent;
+import com.lmco.crt.jfr.EventHandle;
+import com.lmco.crt.jfr.RecordedEvent;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.lmco.crt.CallerSearch")
+@Label("Caller Search")
+@Category({"CRT", "Analysis"})
+@Description("Backward search from the targets, labelling every caller with the targets it reaches")
+public class CallerSearchRecord extends jdk.jfr.Event implements EventHandle {
+
+    @Label("Targets")
+    public int targets;
+
+    @Label("Nodes Created")
+    @Description("Methods in the shared caller DAG of all targets")
+    public int nodes;
+
+    @Label("Edges")
+    @Description("Caller edges in the DAG")
+    public long edges;
+
+    @Override
+    public void commit(RecordedEvent values) {
+        CallerSearchEvent event = (CallerSearchEvent) values;
+        targets = event.targets;
+        nodes = event.nodes;
+        edges = event.edges;
+        commit();
+    }
+}
@@ -0,0 +1,43 @@
+package com.lmco.crt.jfr.recorder;
+
+import com.lmco.crt.jfr.ClassParseEvent;
+import com.lmco.crt.jfr.EventHandle;
+import com.lmco.crt.jfr.RecordedEvent;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Threshold;
+
+// Recorded per class, so by default only for classes taking a millisecond or more
+@Name("com.lmco.crt.ClassParse")
+@Label("Class Parse")
+@Category({"CRT", "Ingestion"})
+@Description("Extracting the facts of one class file with ASM")
+@Threshold("1 ms")
+public class ClassParseRecord extends jdk.jfr.Event implements EventHandle {
+
+    @Label("Entry")
+    public String entryName;
+
+    @Label("Class File Size")
+    @DataAmount
+    public long bytes;
+
+    @Label("Methods")
+    public int methods;
+
+    @Label("Call Sites")
+    public int callSites;
+
+    @Override
+    public void commit(RecordedEvent values) {
+        ClassParseEvent event = (ClassParseEvent) values;
+        entryName = event.entryName;
+        bytes = event.bytes;
+        methods = event.methods;
+        callSites = event.callSites;
+        commit();
+    }
+}
@@ -0,0 +1,25 @@
+package com.lmco.crt.jfr.recorder;
+
+import com.lmco.crt.jfr.*;
+
+// Loaded by RecordedEvent only when jdk.jfr is present
+public class FlightRecorderEvents implements EventFactory {
+
+    @Override
+    public EventHandle create(RecordedEvent event) {
+        if (event instanceof ClassParseEvent) {
+            return new ClassParseRecord();
+        } else if (event instanceof IngestEvent) {
+            return new IngestRecord();
+        } else if (event instanceof GraphBuildEvent) {
+            return new GraphBuildRecord();
+        } else if (event instanceof AnalysisEvent) {
+            return new AnalysisRecord();
+        } else if (event instanceof CallerSearchEvent) {
+            return new CallerSearchRecord();
+        } else if (event instanceof ReportWriteEvent) {
+            return new ReportWriteRecord();
+        }
+        throw new IllegalArgumentException("No flight recorder event for " + event.getClass().getName());
+    }
+}
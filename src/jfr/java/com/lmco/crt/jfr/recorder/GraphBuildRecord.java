@@ -0,0 +1,36 @@
+package com.lmco.crt.jfr.recorder;
+
+import com.lmco.crt.jfr.GraphBuildEvent;
+import com.lmco.crt.jfr.EventHandle;
+import com.lmco.crt.jfr.RecordedEvent;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.lmco.crt.GraphBuild")
+@Label("Graph Build")
+@Category({"CRT", "Analysis"})
+@Description("Building the call graph from the parsed classes")
+public class GraphBuildRecord extends jdk.jfr.Event implements EventHandle {
+
+    @Label("Classes")
+    public int classes;
+
+    @Label("Methods")
+    @Description("Declared and called methods")
+    public int methods;
+
+    @Label("Edges")
+    @Description("Caller to callee edges")
+    public int edges;
+
+    @Override
+    public void commit(RecordedEvent values) {
+        GraphBuildEvent event = (GraphBuildEvent) values;
+        classes = event.classes;
+        methods = event.methods;
+        edges = event.edges;
+        commit();
+    }
+}
@@ -0,0 +1,42 @@
+package com.lmco.crt.jfr.recorder;
+
+import com.lmco.crt.jfr.IngestEvent;
+import com.lmco.crt.jfr.EventHandle;
+import com.lmco.crt.jfr.RecordedEvent;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.lmco.crt.Ingest")
+@Label("Ingest")
+@Category({"CRT", "Ingestion"})
+@Description("Reading and parsing the class entries of a classpath")
+public class IngestRecord extends jdk.jfr.Event implements EventHandle {
+
+    @Label("Classpath")
+    public String classpath;
+
+    @Label("Classes Parsed")
+    public int classesParsed;
+
+    @Label("Classes Cached")
+    @Description("Classes whose facts came from the class facts cache")
+    public int classesCached;
+
+    @Label("Bytes Inflated")
+    @Description("Size of the class files parsed, after decompression")
+    @DataAmount
+    public long bytesInflated;
+
+    @Override
+    public void commit(RecordedEvent values) {
+        IngestEvent event = (IngestEvent) values;
+        classpath = event.classpath;
+        classesParsed = event.classesParsed;
+        classesCached = event.classesCached;
+        bytesInflated = event.bytesInflated;
+        commit();
+    }
+}
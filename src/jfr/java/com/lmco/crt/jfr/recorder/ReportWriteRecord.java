@@ -0,0 +1,46 @@
+package com.lmco.crt.jfr.recorder;
+
+import com.lmco.crt.jfr.ReportWriteEvent;
+import com.lmco.crt.jfr.EventHandle;
+import com.lmco.crt.jfr.RecordedEvent;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("com.lmco.crt.ReportWrite")
+@Label("Report Write")
+@Category({"CRT", "Output"})
+@Description("Enumerating the execution paths of every target and writing them to the report")
+public class ReportWriteRecord extends jdk.jfr.Event implements EventHandle {
+
+    @Label("Report")
+    public String report;
+
+    @Label("Sections")
+    @Description("Vulnerability ID and target pairs")
+    public int sections;
+
+    @Label("Sections Copied")
+    @Description("Sections copied from the previous report by an incremental run")
+    public int sectionsCopied;
+
+    @Label("Paths")
+    public long paths;
+
+    @Label("Bytes Written")
+    @DataAmount
+    public long bytesWritten;
+
+    @Override
+    public void commit(RecordedEvent values) {
+        ReportWriteEvent event = (ReportWriteEvent) values;
+        report = event.report;
+        sections = event.sections;
+        sectionsCopied = event.sectionsCopied;
+        paths = event.paths;
+        bytesWritten = event.bytesWritten;
+        commit();
+    }
+}
@@ -0,0 +1,140 @@
+package com.lmco.crt;
+
+import com.lmco.crt.graph.CallGraph;
+import com.lmco.crt.graph.Reachability;
+import com.lmco.crt.graph.TargetLabels;
+import com.lmco.crt.ingest.ClassFacts;
+import com.lmco.crt.ingest.JarIngestor;
+import com.lmco.crt.tools.SyntheticJarGenerator;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * One benchmark per stage of MethodReachabilityAnalyzer3 over jars from SyntheticJarGenerator with 1k, 10k and 100k
+ * methods. Each stage starts from the output of the previous one, prepared once per trial. Run with gradle jmh; the
+ * gc profiler adds the allocation rate and bytes allocated per operation to every result. Larger sizes can be run
+ * from the benchmark jar, e.g. java -jar build/libs/MethodPathFinder-1.0-SNAPSHOT-jmh.jar -p classes=100000.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AnalysisBenchmark {
+
+    private static final int MAX_DEPTH = 64;
+    private static final long MAX_PATHS = 1_000L;
+
+    @Param({"100", "1000", "10000"})
+    public int classes;
+
+    @Param({"10"})
+    public int methodsPerClass;
+
+    @Param({"4"})
+    public int fanOut;
+
+    private File directory;
+    private File jarFile;
+    private File reportFile;
+    private List<ClassFacts> classFacts;
+    private CallGraph graph;
+    private int[] entryPoints;
+    private int[][] targetRoots;
+    private TargetLabels targetLabels;
+    private Map<String, List<String>> targetMap;
+    private MethodReachabilityAnalyzer3 analyzer;
+    private Map<String, Integer> reportTargets;
+    private TargetLabels reportLabels;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("crt-bench").toFile();
+        jarFile = new File(directory, "bench.jar");
+        reportFile = new File(directory, "report.txt");
+        SyntheticJarGenerator generator = new SyntheticJarGenerator();
+        generator.setClasses(classes);
+        generator.setMethodsPerClass(methodsPerClass);
+        generator.setFanOut(fanOut);
+        generator.generate(jarFile, new File(directory, "VulnerableCode.csv"));
+
+        classFacts = ingest();
+        graph = buildGraph();
+        entryPoints = generator.getEntryPoints().stream().mapToInt(graph::id).toArray();
+        targetRoots = new int[generator.getTargetMethods().size()][];
+        for (int target = 0; target < targetRoots.length; target++) {
+            targetRoots[target] = new int[]{graph.id(generator.getTargetMethods().get(target))};
+        }
+        targetLabels = callerSearch();
+        targetMap = Collections.singletonMap("CVE-BENCH", generator.getTargetMethods());
+
+        analyzer = new MethodReachabilityAnalyzer3();
+        analyzer.setSearchLimits(MAX_DEPTH, MAX_PATHS);
+        analyzer.analyzeJar(jarFile);
+        reportTargets = MethodReachabilityAnalyzer3.targetIndex(targetMap);
+        reportLabels = analyzer.targetLabels(reportTargets);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    @Benchmark
+    public List<ClassFacts> ingest() throws IOException {
+        List<ClassFacts> ingested = new ArrayList<>();
+        new JarIngestor(Runtime.getRuntime().availableProcessors()).ingest(jarFile, ingested::add);
+        return ingested;
+    }
+
+    @Benchmark
+    public CallGraph buildGraph() {
+        CallGraph.Builder graphBuilder = CallGraph.builder();
+        for (ClassFacts facts : classFacts) {
+            for (ClassFacts.MethodFacts method : facts.getMethods()) {
+                int methodId = graphBuilder.declare(method.getSignature());
+                for (ClassFacts.CallSite call : method.getCalls()) {
+                    graphBuilder.addCall(methodId, graphBuilder.method(call.getSignature()));
+                }
+            }
+        }
+        return graphBuilder.build();
+    }
+
+    @Benchmark
+    public Reachability forwardReachability() {
+        return Reachability.compute(graph, entryPoints);
+    }
+
+    @Benchmark
+    public TargetLabels callerSearch() {
+        return TargetLabels.build(graph, targetRoots, methodId -> true);
+    }
+
+    @Benchmark
+    public long pathEnumeration(Blackhole blackhole) throws IOException {
+        long pathCount = 0;
+        for (int target = 0; target < targetLabels.targetCount(); target++) {
+            pathCount += targetLabels.forEachPath(target, targetLabels.rootNodes(target)[0], MAX_DEPTH, MAX_PATHS,
+                    (methodPath, length) -> blackhole.consume(methodPath[length - 1]));
+        }
+        return pathCount;
+    }
+
+    // Only the report: the labels are built once in setUp, and the stats file and slowest targets are left out
+    @Benchmark
+    public long writeReport() {
+        analyzer.writeReport(targetMap, reportTargets, reportLabels, reportFile);
+        return reportFile.length();
+    }
+}
@@ -0,0 +1,264 @@
+package com.lmco.crt;
+
+import com.lmco.crt.graph.SearchStats;
+import com.lmco.crt.util.Utilities;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/*
+ * Keeps the call graphs of one or more programs in memory and answers questions about them over HTTP on the
+ * loopback interface, so each question costs a graph lookup instead of a full analysis. Every argument is one
+ * program, a classpath analyzed as a whole and named after its first entry. Queries name a target like a row of the
+ * target feeds, a class and optionally a method, and are answered in plain text, one method or path per line:
+ *
+ *   /resolveTarget?class=...[&method=]     methods the target names
+ *   /callersOf?class=...[&method=]         direct callers of each of them
+ *   /isReachable?class=...[&method=]       whether an entry point reaches each of them, with a witness path
+ *   /pathsTo?class=...[&method=][&maxPaths=][&maxDepth=]   caller paths, outermost caller first
+ *   POST /reload                           analyzes the program again and swaps it in once done
+ *
+ * Add program=<name> when more than one program is loaded. Queries run on a thread pool and only read an analyzer.
+ * Reloads run one at a time on their own thread and build a new analyzer next to the old one, so queries never wait
+ * for a reload. Answers are streamed as they are found, so a query over a whole program is never held in memory,
+ * and maxPaths is capped at crt.server.maxPaths. A failure once streaming started ends the body with an error line.
+ */
+public class AnalysisServer {
+
+    private static final Set<String> QUERIES = new HashSet<>(
+            Arrays.asList("/resolveTarget", "/callersOf", "/isReachable", "/pathsTo"));
+    private final Map<String, List<File>> classpaths = new LinkedHashMap<>();
+    private final Map<String, MethodReachabilityAnalyzer3> programs = new ConcurrentHashMap<>();
+    private final int maxDepth = Integer.getInteger("crt.maxDepth", 64);
+    private final long maxPaths = Long.getLong("crt.maxPaths", 1000L);
+    private final long pathLimit = Long.getLong("crt.server.maxPaths", 100_000L);
+    private final ExecutorService reloads = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "crt-reload");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Programs with a reload queued that has not started yet; a second request for one of them is not queued again
+    private final Set<String> pendingReloads = ConcurrentHashMap.newKeySet();
+
+    private interface Answer {
+        void write(Writer writer) throws IOException;
+    }
+
+    public static void main(String[] args) throws IOException {
+        List<String> programClasspaths = args.length > 0 ? Arrays.asList(args)
+                : Collections.singletonList(System.getProperty("crt.classpath", "jars\\crt-service-all-1.0-SNAPSHOT.jar"));
+        AnalysisServer server = new AnalysisServer();
+        for (String programClasspath : programClasspaths) {
+            server.addProgram(Utilities.parseClasspath(programClasspath));
+        }
+        int port = Integer.getInteger("crt.server.port", 8686);
+        int threads = Integer.getInteger("crt.server.threads", Runtime.getRuntime().availableProcessors());
+        server.start(port, Executors.newFixedThreadPool(threads));
+        System.out.println("Answering queries on http://localhost:" + port + "/ for " + server.classpaths.keySet());
+    }
+
+    public void addProgram(List<File> classpath) throws IOException {
+        String name = classpath.get(0).getName();
+        for (int i = 2; classpaths.containsKey(name); i++) {
+            name = classpath.get(0).getName() + "-" + i;
+        }
+        classpaths.put(name, classpath);
+        programs.put(name, analyze(name, classpath));
+    }
+
+    private static MethodReachabilityAnalyzer3 analyze(String name, List<File> classpath) throws IOException {
+        long start = System.currentTimeMillis();
+        // Named after the program, so programs whose first jars share a file name do not share a class cache
+        MethodReachabilityAnalyzer3 analyzer = MethodReachabilityAnalyzer3.configured(name);
+        analyzer.analyzeClasspath(classpath);
+        System.out.println("Loaded " + name + ": " + analyzer.methodCount() + " methods, " + analyzer.reachableCount()
+                + " reachable, in " + (System.currentTimeMillis() - start) + " ms");
+        return analyzer;
+    }
+
+    public HttpServer start(int port, ExecutorService executor) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+        return server;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            String path = exchange.getRequestURI().getPath();
+            if (path.equals("/")) {
+                StringBuilder response = new StringBuilder();
+                for (String name : classpaths.keySet()) {
+                    MethodReachabilityAnalyzer3 analyzer = programs.get(name);
+                    response.append(name).append(": ").append(analyzer.methodCount()).append(" methods, ")
+                            .append(analyzer.reachableCount()).append(" reachable\n");
+                }
+                respond(exchange, 200, response.toString());
+                return;
+            }
+            String name = query.containsKey("program") ? query.get("program")
+                    : programs.size() == 1 ? programs.keySet().iterator().next() : null;
+            MethodReachabilityAnalyzer3 analyzer = name != null ? programs.get(name) : null;
+            if (analyzer == null) {
+                respond(exchange, 404, "Unknown program, one of " + classpaths.keySet() + " is needed\n");
+                return;
+            }
+            if (path.equals("/reload")) {
+                reload(exchange, name);
+                return;
+            }
+            if (!QUERIES.contains(path)) {
+                respond(exchange, 404, "Unknown query: " + path + "\n");
+                return;
+            }
+            String className = query.get("class");
+            if (className == null || className.isEmpty()) {
+                respond(exchange, 400, "Missing class\n");
+                return;
+            }
+            String methodName = query.get("method");
+            String target = className.replace('.', '/')
+                    + (methodName == null || methodName.isEmpty() ? "" : "." + methodName);
+            if (path.equals("/pathsTo")) {
+                streamPaths(exchange, analyzer, target, query);
+            } else {
+                List<String> methods = analyzer.resolveTarget(target);
+                stream(exchange, writer -> answer(analyzer, path, methods, writer));
+            }
+        } catch (IllegalArgumentException e) {
+            respond(exchange, 400, e.getMessage() + "\n");
+        } catch (RuntimeException | IOException e) {
+            e.printStackTrace();
+            respond(exchange, 500, e + "\n");
+        }
+    }
+
+    private void reload(HttpExchange exchange, String name) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            exchange.getResponseHeaders().set("Allow", "POST");
+            respond(exchange, 405, "Reload with POST\n");
+            return;
+        }
+        if (!pendingReloads.add(name)) {
+            respond(exchange, 202, "Reload of " + name + " already queued\n");
+            return;
+        }
+        reloads.execute(() -> {
+            pendingReloads.remove(name);
+            try {
+                programs.put(name, analyze(name, classpaths.get(name)));
+            } catch (IOException | RuntimeException e) {
+                e.printStackTrace();
+            }
+        });
+        respond(exchange, 202, "Reloading " + name + "\n");
+    }
+
+    private static void answer(MethodReachabilityAnalyzer3 analyzer, String path, List<String> methods, Writer writer)
+            throws IOException {
+        for (String method : methods) {
+            switch (path) {
+                case "/resolveTarget":
+                    writer.write(method + "\n");
+                    break;
+                case "/callersOf":
+                    writer.write(method + "\n");
+                    for (String caller : analyzer.callersOf(method)) {
+                        writer.write("  <- " + caller + "\n");
+                    }
+                    break;
+                case "/isReachable":
+                    List<String> witnessPath = analyzer.pathTo(method);
+                    writer.write(method + (witnessPath != null
+                            ? " reachable: " + String.join(" -> ", witnessPath) : " not reachable") + "\n");
+                    break;
+            }
+        }
+    }
+
+    private void streamPaths(HttpExchange exchange, MethodReachabilityAnalyzer3 analyzer, String target,
+                             Map<String, String> query) throws IOException {
+        int depth = query.containsKey("maxDepth") ? Integer.parseInt(query.get("maxDepth")) : maxDepth;
+        long paths = Math.min(query.containsKey("maxPaths") ? Long.parseLong(query.get("maxPaths")) : maxPaths,
+                pathLimit);
+        if (depth < 1 || paths < 1) {
+            throw new IllegalArgumentException("maxDepth and maxPaths must be positive");
+        }
+        List<String> methods = analyzer.resolveTarget(target);
+        stream(exchange, writer -> {
+            SearchStats searchStats = new SearchStats();
+            analyzer.forEachPathTo(methods, depth, paths, (methodPath, length) -> {
+                StringBuilder line = new StringBuilder();
+                for (int i = length - 1; i >= 0; i--) {
+                    line.append(analyzer.methodName(methodPath[i])).append(i > 0 ? " -> " : "\n");
+                }
+                writer.write(line.toString());
+            }, searchStats);
+            if (searchStats.isPathLimitReached()) {
+                writer.write("Paths truncated after " + paths + "\n");
+            }
+            if (searchStats.isDepthLimitReached()) {
+                writer.write("Paths cut at depth " + depth + "\n");
+            }
+        });
+    }
+
+    // The body is written while the answer is found. Once the status is sent a failure cannot change it, so a
+    // runtime failure ends the body with an error line instead of reaching handle
+    private static void stream(HttpExchange exchange, Answer answer) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream body = exchange.getResponseBody();
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(body, StandardCharsets.UTF_8))) {
+            try {
+                answer.write(writer);
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                writer.write("Error: " + e + "\n");
+            }
+        } catch (IOException e) {
+            // Most likely the client went away
+            System.err.println("Query aborted: " + exchange.getRequestURI() + " - " + e.getMessage());
+        }
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) throws UnsupportedEncodingException {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery != null) {
+            for (String parameter : rawQuery.split("&")) {
+                int split = parameter.indexOf('=');
+                if (split > 0) {
+                    query.put(URLDecoder.decode(parameter.substring(0, split), "UTF-8"),
+                            URLDecoder.decode(parameter.substring(split + 1), "UTF-8"));
+                }
+            }
+        }
+        return query;
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.lmco.crt;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/*
+ * What an analysis run saw and produced: the CRC of every class entry in the jar, and for every report section
+ * (one vulnerability ID and target) the classes in the target's backward cone and where the section sits in the
+ * report file. The next run compares entry CRCs to find changed classes and copies every section whose cone
+ * does not touch them instead of searching again. Sections are only reused under the same search limits and
+ * analysis settings, only into a report that is compressed the same way, and only from a report file whose length
+ * and CRC are the ones recorded when it was written.
+ */
+public class AnalysisSnapshot {
+
+    private static final int MAGIC = 0x43525453;
+    private static final int VERSION = 5;
+
+    private final Map<String, Long> entryCrcs = new HashMap<>();
+    private final Map<String, String> entryClasses = new HashMap<>();
+    private final Map<String, Set<String>> sectionCones = new HashMap<>();
+    private final Map<String, long[]> sections = new HashMap<>();
+    private int maxDepth = Integer.MAX_VALUE;
+    private long maxPaths = Long.MAX_VALUE;
+    private boolean compressed;
+    private String settings = "";
+    private long reportLength = -1;
+    private long reportCrc;
+
+    // Returns null when there is no usable snapshot, which means a full analysis
+    public static AnalysisSnapshot load(File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                System.out.println("Ignoring snapshot with an unknown format: " + file);
+                return null;
+            }
+            AnalysisSnapshot snapshot = new AnalysisSnapshot();
+            snapshot.setSearchLimits(in.readInt(), in.readLong());
+            snapshot.setCompressed(in.readBoolean());
+            snapshot.setSettings(in.readUTF());
+            snapshot.setReport(in.readLong(), in.readLong());
+            int entryCount = in.readInt();
+            for (int i = 0; i < entryCount; i++) {
+                snapshot.addEntry(in.readUTF(), in.readLong(), in.readUTF());
+            }
+            int sectionCount = in.readInt();
+            for (int i = 0; i < sectionCount; i++) {
+                String sectionKey = in.readUTF();
+                long offset = in.readLong();
+                long length = in.readLong();
+                int coneSize = in.readInt();
+                Set<String> coneClasses = new HashSet<>(coneSize * 2);
+                for (int j = 0; j < coneSize; j++) {
+                    coneClasses.add(in.readUTF());
+                }
+                snapshot.putSection(sectionKey, coneClasses, offset, length);
+            }
+            return snapshot;
+        } catch (IOException e) {
+            System.err.println("Ignoring unreadable snapshot: " + file + " - " + e.getMessage());
+            return null;
+        }
+    }
+
+    public void save(File file) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(maxDepth);
+            out.writeLong(maxPaths);
+            out.writeBoolean(compressed);
+            out.writeUTF(settings);
+            out.writeLong(reportLength);
+            out.writeLong(reportCrc);
+            out.writeInt(entryCrcs.size());
+            for (Map.Entry<String, Long> entry : entryCrcs.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeLong(entry.getValue());
+                out.writeUTF(entryClasses.get(entry.getKey()));
+            }
+            out.writeInt(sections.size());
+            for (Map.Entry<String, long[]> section : sections.entrySet()) {
+                out.writeUTF(section.getKey());
+                out.writeLong(section.getValue()[0]);
+                out.writeLong(section.getValue()[1]);
+                Set<String> coneClasses = sectionCones.get(section.getKey());
+                out.writeInt(coneClasses.size());
+                for (String coneClass : coneClasses) {
+                    out.writeUTF(coneClass);
+                }
+            }
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    public static String sectionKey(String vulnId, String target) {
+        return vulnId + " " + target;
+    }
+
+    public void setSearchLimits(int maxDepth, long maxPaths) {
+        this.maxDepth = maxDepth;
+        this.maxPaths = maxPaths;
+    }
+
+    public boolean hasSearchLimits(int maxDepth, long maxPaths) {
+        return this.maxDepth == maxDepth && this.maxPaths == maxPaths;
+    }
+
+    // Everything besides the classes and search limits that changes the text of a section
+    public void setSettings(String settings) {
+        this.settings = settings;
+    }
+
+    public boolean hasSettings(String settings) {
+        return this.settings.equals(settings);
+    }
+
+    // The report the section offsets point into, as it was when written
+    public void setReport(long length, long crc) {
+        this.reportLength = length;
+        this.reportCrc = crc;
+    }
+
+    public boolean matchesReport(File reportFile) throws IOException {
+        return reportLength >= 0 && reportFile.length() == reportLength && checksum(reportFile) == reportCrc;
+    }
+
+    public static long checksum(File file) throws IOException {
+        CRC32 crc = new CRC32();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+        try (FileChannel channel = FileChannel.open(file.toPath())) {
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                crc.update(buffer);
+                buffer.clear();
+            }
+        }
+        return crc.getValue();
+    }
+
+    // Whether section offsets and lengths are bytes of a gzip report
+    public void setCompressed(boolean compressed) {
+        this.compressed = compressed;
+    }
+
+    public boolean isCompressed() {
+        return compressed;
+    }
+
+    public void addEntry(String entryName, long crc, String className) {
+        entryCrcs.put(entryName, crc);
+        entryClasses.put(entryName, className);
+    }
+
+    public void removeEntry(String entryName) {
+        entryCrcs.remove(entryName);
+        entryClasses.remove(entryName);
+    }
+
+    public Long getCrc(String entryName) {
+        return entryCrcs.get(entryName);
+    }
+
+    // Classes whose entry was added, removed or rewritten between this snapshot and the next one
+    public Set<String> changedClasses(AnalysisSnapshot next) {
+        Set<String> changedClasses = new HashSet<>();
+        for (Map.Entry<String, Long> entry : entryCrcs.entrySet()) {
+            if (!entry.getValue().equals(next.entryCrcs.get(entry.getKey()))) {
+                changedClasses.add(entryClasses.get(entry.getKey()));
+            }
+        }
+        for (Map.Entry<String, Long> entry : next.entryCrcs.entrySet()) {
+            if (!entryCrcs.containsKey(entry.getKey())) {
+                changedClasses.add(next.entryClasses.get(entry.getKey()));
+            }
+        }
+        return changedClasses;
+    }
+
+    public void putSection(String sectionKey, Set<String> coneClasses, long offset, long length) {
+        sectionCones.put(sectionKey, coneClasses);
+        sections.put(sectionKey, new long[]{offset, length});
+    }
+
+    public Set<String> getCone(String sectionKey) {
+        return sectionCones.get(sectionKey);
+    }
+
+    // {offset, length} of the section in the report file, or null if the section was not written
+    public long[] getSection(String sectionKey) {
+        return sections.get(sectionKey);
+    }
+}
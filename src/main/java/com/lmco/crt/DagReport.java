@@ -0,0 +1,314 @@
+package com.lmco.crt;
+
+import com.lmco.crt.graph.CallerDag;
+import com.lmco.crt.graph.PathConsumer;
+import com.lmco.crt.graph.SearchStats;
+import com.lmco.crt.graph.TargetLabels;
+
+import java.io.*;
+import java.util.*;
+import java.util.function.IntFunction;
+
+/*
+ * The report as the shared caller DAG of all targets instead of every path written out. Each method in any target's
+ * cone is stored once: its signature, split into a class table entry and the rest, whether paths continue past it
+ * and the DAG nodes of its callers, all as varints. Targets list their root nodes and report sections name a target
+ * by index. Paths are expanded on demand by walking from a target's roots through its callers, which gives the same
+ * paths as the text report under the same limits. The header records whose text report that is, as the layouts
+ * differ: MethodPathFinder leaves out the target method alone and ends a path with the vulnerable code as listed
+ * instead of the method. It also records the search limits that report used. Run main to list the sections or print
+ * the paths of one in that layout, under those limits unless others are given.
+ */
+public class DagReport {
+
+    private static final int MAGIC = 0x43525444;
+    private static final int VERSION = 3;
+
+    public enum Layout {
+        // One method per line, outermost caller first, as MethodReachabilityAnalyzer3 writes it
+        ANALYZER,
+        // One line per path ending with the vulnerable code, only paths with a caller, as MethodPathFinder writes it
+        PATH_FINDER
+    }
+
+    private final Layout layout;
+    private final int maxDepth;
+    private final long maxPaths;
+    private final String[] signatures;
+    private final boolean[] expanded;
+    private final CallerDag dag;
+    private final Map<String, int[]> targetRoots;
+    private final Map<String, List<String>> sections;
+
+    private DagReport(Layout layout, int maxDepth, long maxPaths, String[] signatures, boolean[] expanded, CallerDag dag,
+                      Map<String, int[]> targetRoots, Map<String, List<String>> sections) {
+        this.layout = layout;
+        this.maxDepth = maxDepth;
+        this.maxPaths = maxPaths;
+        this.signatures = signatures;
+        this.expanded = expanded;
+        this.dag = dag;
+        this.targetRoots = targetRoots;
+        this.sections = sections;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: DagReport <report.dag> [vulnerability ID or target] [maxPaths] [maxDepth]");
+            return;
+        }
+        DagReport report = read(new File(args[0]));
+        if (args.length == 1) {
+            System.out.println(report.layout + " layout, " + report.size() + " methods, " + report.targetRoots.size()
+                    + " targets, " + report.sections.size() + " vulnerability IDs, written with maxPaths "
+                    + report.maxPaths + " and maxDepth " + report.maxDepth);
+            for (Map.Entry<String, List<String>> section : report.sections.entrySet()) {
+                System.out.println(section.getKey() + ": " + section.getValue());
+            }
+            return;
+        }
+        long maxPaths = args.length > 2 ? Long.parseLong(args[2]) : report.maxPaths;
+        int maxDepth = args.length > 3 ? Integer.parseInt(args[3]) : report.maxDepth;
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(System.out));
+        for (Map.Entry<String, List<String>> section : report.sections.entrySet()) {
+            // The text reports write the header once per section, also when none of its targets were found
+            boolean wholeSection = args[1].equals(section.getKey());
+            boolean headerWritten = false;
+            if (wholeSection) {
+                writer.write("Vulnerability ID: " + section.getKey() + "\n");
+                headerWritten = true;
+            }
+            for (String target : section.getValue()) {
+                if (wholeSection || args[1].equals(target)) {
+                    if (!headerWritten) {
+                        writer.write("Vulnerability ID: " + section.getKey() + "\n");
+                        headerWritten = true;
+                    }
+                    writer.write("  Vulnerable Code: " + target + "\n");
+                    SearchStats searchStats = new SearchStats();
+                    long pathCount = report.forEachPath(target, maxDepth, maxPaths, (methodPath, length) -> {
+                        if (report.layout == Layout.PATH_FINDER) {
+                            StringBuilder executionPath = new StringBuilder("      Execution Path: [");
+                            for (int i = length - 1; i > 0; i--) {
+                                executionPath.append(report.signature(methodPath[i])).append(", ");
+                            }
+                            writer.write(executionPath.append(target).append("]\n").toString());
+                            return;
+                        }
+                        writer.write("      Execution Path: \n");
+                        StringBuilder sb = new StringBuilder("          ");
+                        for (int i = length - 1; i >= 0; i--) {
+                            sb.append(" ");
+                            writer.write(sb + "->" + report.signature(methodPath[i]) + "\n");
+                        }
+                    }, searchStats);
+                    // MethodReachabilityAnalyzer3 ends these lines with a space, MethodPathFinder does not
+                    String end = report.layout == Layout.PATH_FINDER ? "\n" : " \n";
+                    if (pathCount == 0) {
+                        writer.write(report.layout == Layout.PATH_FINDER ? "      Execution Path: [" + target + "]\n"
+                                : "      Execution Path: N/A \n");
+                    }
+                    if (searchStats.isPathLimitReached()) {
+                        writer.write("      Execution Paths: truncated after " + maxPaths + end);
+                    }
+                    if (searchStats.isDepthLimitReached()) {
+                        writer.write("      Execution Paths: cut at depth " + maxDepth + end);
+                    }
+                }
+            }
+        }
+        writer.flush();
+    }
+
+    // sections maps each vulnerability ID to its targets, targetIndex each target to its index in targetLabels;
+    // maxDepth and maxPaths are the limits the text report would use, the defaults when paths are expanded
+    public static void write(File file, Layout layout, int maxDepth, long maxPaths, TargetLabels targetLabels,
+                             IntFunction<String> methodNames, Map<String, Integer> targetIndex,
+                             Map<String, List<String>> sections) throws IOException {
+        CallerDag dag = targetLabels.getDag();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeByte(layout.ordinal());
+            out.writeInt(maxDepth);
+            out.writeLong(maxPaths);
+
+            Map<String, Integer> classIndex = new LinkedHashMap<>();
+            int[] nodeClasses = new int[dag.size()];
+            String[] members = new String[dag.size()];
+            for (int node = 0; node < dag.size(); node++) {
+                String signature = methodNames.apply(dag.methodId(node));
+                int split = signature.lastIndexOf('.', signature.indexOf('(') >= 0 ? signature.indexOf('(') : signature.length());
+                Integer index = classIndex.putIfAbsent(signature.substring(0, split + 1), classIndex.size());
+                nodeClasses[node] = index != null ? index : classIndex.size() - 1;
+                members[node] = signature.substring(split + 1);
+            }
+            writeVarInt(out, classIndex.size());
+            for (String className : classIndex.keySet()) {
+                out.writeUTF(className);
+            }
+
+            writeVarInt(out, dag.size());
+            writeVarInt(out, dag.rootCount());
+            for (int node = 0; node < dag.size(); node++) {
+                writeVarInt(out, nodeClasses[node]);
+                out.writeUTF(members[node]);
+                out.writeBoolean(targetLabels.isExpanded(node));
+                writeVarInt(out, dag.callerEnd(node) - dag.callerStart(node));
+                for (int i = dag.callerStart(node); i < dag.callerEnd(node); i++) {
+                    writeVarInt(out, dag.caller(i));
+                }
+            }
+
+            writeVarInt(out, targetIndex.size());
+            for (Map.Entry<String, Integer> target : targetIndex.entrySet()) {
+                out.writeUTF(target.getKey());
+                int[] rootNodes = targetLabels.rootNodes(target.getValue());
+                writeVarInt(out, rootNodes.length);
+                for (int rootNode : rootNodes) {
+                    writeVarInt(out, rootNode);
+                }
+            }
+
+            writeVarInt(out, sections.size());
+            for (Map.Entry<String, List<String>> section : sections.entrySet()) {
+                out.writeUTF(section.getKey());
+                Set<String> targets = new LinkedHashSet<>(section.getValue());
+                writeVarInt(out, targets.size());
+                for (String target : targets) {
+                    writeVarInt(out, targetIndex.get(target));
+                }
+            }
+        }
+    }
+
+    public static DagReport read(File file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("Not a DAG report of a known version: " + file);
+            }
+            Layout layout = Layout.values()[in.readUnsignedByte()];
+            int maxDepth = in.readInt();
+            long maxPaths = in.readLong();
+            String[] classNames = new String[readVarInt(in)];
+            for (int i = 0; i < classNames.length; i++) {
+                classNames[i] = in.readUTF();
+            }
+
+            int nodeCount = readVarInt(in);
+            int rootCount = readVarInt(in);
+            String[] signatures = new String[nodeCount];
+            boolean[] expanded = new boolean[nodeCount];
+            int[] methodIds = new int[nodeCount];
+            int[] callerOffsets = new int[nodeCount + 1];
+            int[] callers = new int[Math.max(16, nodeCount)];
+            int edgeCount = 0;
+            for (int node = 0; node < nodeCount; node++) {
+                signatures[node] = classNames[readVarInt(in)] + in.readUTF();
+                expanded[node] = in.readBoolean();
+                methodIds[node] = node;
+                callerOffsets[node] = edgeCount;
+                int callerCount = readVarInt(in);
+                if (edgeCount + callerCount > callers.length) {
+                    callers = Arrays.copyOf(callers, Math.max(callers.length * 2, edgeCount + callerCount));
+                }
+                for (int i = 0; i < callerCount; i++) {
+                    callers[edgeCount++] = readVarInt(in);
+                }
+            }
+            callerOffsets[nodeCount] = edgeCount;
+            CallerDag dag = CallerDag.of(rootCount, methodIds, callerOffsets, Arrays.copyOf(callers, edgeCount));
+
+            int targetCount = readVarInt(in);
+            String[] targetNames = new String[targetCount];
+            Map<String, int[]> targetRoots = new LinkedHashMap<>();
+            for (int target = 0; target < targetCount; target++) {
+                targetNames[target] = in.readUTF();
+                int[] rootNodes = new int[readVarInt(in)];
+                for (int i = 0; i < rootNodes.length; i++) {
+                    rootNodes[i] = readVarInt(in);
+                }
+                targetRoots.put(targetNames[target], rootNodes);
+            }
+
+            int sectionCount = readVarInt(in);
+            Map<String, List<String>> sections = new LinkedHashMap<>();
+            for (int i = 0; i < sectionCount; i++) {
+                String vulnId = in.readUTF();
+                List<String> targets = new ArrayList<>();
+                int count = readVarInt(in);
+                for (int j = 0; j < count; j++) {
+                    targets.add(targetNames[readVarInt(in)]);
+                }
+                sections.put(vulnId, targets);
+            }
+            return new DagReport(layout, maxDepth, maxPaths, signatures, expanded, dag, targetRoots, sections);
+        }
+    }
+
+    public Layout getLayout() {
+        return layout;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public long getMaxPaths() {
+        return maxPaths;
+    }
+
+    public int size() {
+        return signatures.length;
+    }
+
+    // Paths hold DAG nodes, from the target's root to the outermost caller
+    public String signature(int node) {
+        return signatures[node];
+    }
+
+    // Vulnerability ID to its targets, in report order
+    public Map<String, List<String>> getSections() {
+        return sections;
+    }
+
+    // Paths of a target from each of its roots, sharing maxPaths and left out as the layout's text report leaves them
+    // out; 0 for an unknown target
+    public long forEachPath(String target, int maxDepth, long maxPaths, PathConsumer consumer) throws IOException {
+        return forEachPath(target, maxDepth, maxPaths, consumer, null);
+    }
+
+    public long forEachPath(String target, int maxDepth, long maxPaths, PathConsumer consumer, SearchStats stats)
+            throws IOException {
+        int[] rootNodes = targetRoots.get(target);
+        if (rootNodes == null) {
+            return 0;
+        }
+        Set<Integer> roots = new HashSet<>();
+        for (int rootNode : rootNodes) {
+            roots.add(rootNode);
+        }
+        // MethodPathFinder leaves out the target method alone, the only path of a root without callers
+        return dag.forEachPath(rootNodes, node -> expanded[node] || roots.contains(node), layout == Layout.PATH_FINDER,
+                maxDepth, maxPaths, consumer, stats);
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+}
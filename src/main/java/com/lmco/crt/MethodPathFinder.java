@@ -1,137 +1,120 @@
 package com.lmco.crt;
 
+import com.lmco.crt.graph.CallGraph;
+import com.lmco.crt.graph.ClassHierarchy;
+import com.lmco.crt.graph.SearchStats;
+import com.lmco.crt.graph.TargetLabels;
+import com.lmco.crt.ingest.ClassFacts;
+import com.lmco.crt.ingest.ClassFactsCache;
+import com.lmco.crt.ingest.JarIngestor;
+import com.lmco.crt.ingest.PackageFilter;
+import com.lmco.crt.jfr.GraphBuildEvent;
+import com.lmco.crt.jfr.ReportWriteEvent;
+import com.lmco.crt.util.TargetStats;
 import com.lmco.crt.util.Utilities;
-import org.apache.commons.compress.archivers.jar.JarArchiveEntry;
-import org.apache.commons.compress.archivers.jar.JarArchiveInputStream;
-import org.objectweb.asm.ClassReader;
-import org.objectweb.asm.Opcodes;
-import org.objectweb.asm.tree.ClassNode;
-import org.objectweb.asm.tree.MethodInsnNode;
-import org.objectweb.asm.tree.MethodNode;
-import org.objectweb.asm.tree.AbstractInsnNode;
-import org.objectweb.asm.tree.InsnList;
-
-import java.io.BufferedWriter;
-import java.io.FileWriter;
+
+import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Paths;
 import java.util.*;
 
 public class MethodPathFinder {
-    private static final Map<String, List<String>> TARGET_MAP = Utilities.readCsvFromResources("VulnerableCode.csv");
+    private static final Map<String, List<String>> TARGET_MAP = Utilities.loadTargets(System.getProperty("crt.targets"));
 
     static class ClassInfo {
         boolean isAbstract;
         String superClass;
-        ClassNode classNode;
+        ClassFacts classFacts;
 
-        ClassInfo(boolean isAbstract, String superClass, ClassNode classNode) {
+        ClassInfo(boolean isAbstract, String superClass, ClassFacts classFacts) {
             this.isAbstract = isAbstract;
             this.superClass = superClass;
-            this.classNode = classNode;
+            this.classFacts = classFacts;
         }
     }
 
     public static void main(String[] args) throws IOException {
 
-        String jarPath = "jars\\crt-service-all-1.0-SNAPSHOT.jar";
+        List<File> classpath = Utilities.parseClasspath(System.getProperty("crt.classpath", "jars\\crt-service-all-1.0-SNAPSHOT.jar"));
+        int parallelism = Integer.getInteger("crt.parallelism", Runtime.getRuntime().availableProcessors());
+
+        File cacheFile = new File(System.getProperty("crt.cacheDir", "cache"), classpath.get(0).getName() + ".facts");
+
+        boolean mappedArchives = Boolean.getBoolean("crt.mmap");
+        PackageFilter packageFilter = PackageFilter.parse(System.getProperty("crt.include"), System.getProperty("crt.exclude"),
+                System.getProperty("crt.excludeMode"));
 
-        Map<String, ClassInfo> classInfoMap = extractClassesFromJar(jarPath);
+        Map<String, ClassInfo> classInfoMap = extractClassesFromJar(classpath, parallelism, mappedArchives, packageFilter, cacheFile);
         Map<String, List<String>> methodCallGraph = buildMethodCallGraph(classInfoMap);
-        Map<String, Map<String, List<List<String>>>> vulnerableCodePathsMap = new HashMap<>();
-        Map<String, List<List<String>>> methodPathsMap = null;
-        for (Map.Entry<String, List<String>> vulnerableCodeMapping : TARGET_MAP.entrySet()) {
-            methodPathsMap = new HashMap<>();
-            String vulnerabilityId = vulnerableCodeMapping.getKey();
-            List<String> vulnerableCodeList = vulnerableCodeMapping.getValue();
-            for (String vulnerableCodeSource : vulnerableCodeList) {
-                TreeNode<String> root = new TreeNode<>(vulnerableCodeSource);
-                // Vulnerable code is for an entire class and not a specific method
-                if (!vulnerableCodeSource.contains(".")) {
-                    List<String> classMethods = collectClassMethods(methodCallGraph, vulnerableCodeSource);
-                    for (String classMethod : classMethods) {
-                        createMethodCallTree(classInfoMap, methodCallGraph, classMethod, root);
-                    }
-                }
-                else {
-                    createMethodCallTree(classInfoMap, methodCallGraph, vulnerableCodeSource, root);
-                }
-                //createMethodCallTree(classInfoMap, methodCallGraph, vulnerableCodeSource, root);
-                List<List<String>> allMethodPaths = getAllMethodPaths(root);
-                methodPathsMap.put(root.data, allMethodPaths);
-                vulnerableCodePathsMap.put(vulnerabilityId, methodPathsMap);
-            }
-        }
-//        for (Map.Entry<String, Map<String, List<List<String>>>> vulnPathMapping : vulnerableCodePathsMap.entrySet()) {
-//            String vulnId = vulnPathMapping.getKey();
-//            Map<String, List<List<String>>> vulnPathSubMap = vulnPathMapping.getValue();
-//            for (Map.Entry<String, List<List<String>>> vulnerableCodePaths : vulnPathSubMap.entrySet()) {
-//                String vulnerableCode = vulnerableCodePaths.getKey();
-//                List<List<String>> codeExecutionPaths = vulnerableCodePaths.getValue();
-//                for (List<String> codeExecutionPath : codeExecutionPaths) {
-//                    Collections.reverse(codeExecutionPath);
-//                    System.out.println("VulnId:" + vulnId + ", " + "VulnerableCode: " + vulnerableCode + ", " + "Execution Path: " + codeExecutionPath.toString());
-//                }
-//            }
-//        }
+        CallGraph callGraph = CallGraph.from(methodCallGraph);
+        BitSet abstractCallers = findAbstractCallers(classInfoMap, callGraph);
+        int maxDepth = Integer.getInteger("crt.maxDepth", 64);
+        long maxPaths = Long.getLong("crt.maxPaths", 100_000L);
+        // crt.format=dag writes the shared caller DAG for DagReport instead of every path
+        boolean dagFormat = "dag".equals(System.getProperty("crt.format"));
+        boolean compressedReport = Boolean.getBoolean("crt.gzip");
+        writePathsToFile(methodCallGraph, callGraph, abstractCallers, maxDepth, maxPaths, dagFormat, compressedReport);
         System.out.println("breakpoint");
-
-        assert methodPathsMap != null;
-        writePathsToFile(vulnerableCodePathsMap);
     }
 
-    private static Map<String, ClassInfo> extractClassesFromJar(String jarPath) throws IOException {
+    // Nested BOOT-INF/lib and WEB-INF/lib jars are read from the archive in memory, filtered classes are not read at all
+    private static Map<String, ClassInfo> extractClassesFromJar(List<File> classpath, int parallelism, boolean mappedArchives,
+                                                                PackageFilter packageFilter, File cacheFile) throws IOException {
         Map<String, ClassInfo> classInfoMap = new HashMap<>();
-        try (JarArchiveInputStream jarInputStream = new JarArchiveInputStream(Files.newInputStream(Paths.get(jarPath)))) {
-            JarArchiveEntry entry;
-            while ((entry = jarInputStream.getNextJarEntry()) != null) {
-                if (entry.getName().endsWith(".class") && !entry.getName().contains("META-INF/")) {
-                    ClassReader classReader = new ClassReader(jarInputStream);
-                    ClassNode classNode = new ClassNode();
-                    classReader.accept(classNode, 0);
-                    boolean isAbstract = (classNode.access & Opcodes.ACC_ABSTRACT) != 0;
-                    String superClass = classNode.superName;
-                    classInfoMap.put(classNode.name, new ClassInfo(isAbstract, superClass, classNode));
-                }
-            }
-        }
+        JarIngestor ingestor = new JarIngestor(parallelism);
+        ingestor.setMappedArchives(mappedArchives);
+        ingestor.setPackageFilter(packageFilter);
+        ClassFactsCache cache = ClassFactsCache.load(cacheFile);
+        ingestor.setCache(cache);
+        ingestor.ingest(classpath, entryName -> true, (entryName, crc, classFacts) ->
+                classInfoMap.put(classFacts.getName(),
+                        new ClassInfo(classFacts.isAbstract(), classFacts.getSuperName(), classFacts)));
+        cache.save();
         return classInfoMap;
     }
 
     private static Map<String, List<String>> buildMethodCallGraph(Map<String, ClassInfo> classInfoMap) {
+        GraphBuildEvent event = new GraphBuildEvent();
+        event.begin();
         Map<String, List<String>> methodCallGraph = new HashMap<>();
         for (ClassInfo classInfo : classInfoMap.values()) {
-            ClassNode classNode = classInfo.classNode;
-            for (MethodNode method : classNode.methods) {
-                String methodName = classNode.name + "." + method.name;
+            ClassFacts classFacts = classInfo.classFacts;
+            for (ClassFacts.MethodFacts method : classFacts.getMethods()) {
+                String methodName = classFacts.getName() + "." + method.getName();
                 methodCallGraph.putIfAbsent(methodName, new ArrayList<>());
-                InsnList instructions = method.instructions;
-                for (AbstractInsnNode insn : instructions) {
-                    if (insn.getType() == AbstractInsnNode.METHOD_INSN) {
-                        MethodInsnNode methodInsn = (MethodInsnNode) insn;
-                        String calledMethodName = methodInsn.owner + "." + methodInsn.name;
-                        methodCallGraph.get(methodName).add(calledMethodName);
-                    }
+                for (ClassFacts.CallSite call : method.getCalls()) {
+                    String calledMethodName = call.getOwner() + "." + call.getName();
+                    methodCallGraph.get(methodName).add(calledMethodName);
                 }
             }
         }
+        event.end();
+        if (event.shouldCommit()) {
+            event.classes = classInfoMap.size();
+            event.methods = methodCallGraph.size();
+            for (List<String> calledMethods : methodCallGraph.values()) {
+                event.edges += calledMethods.size();
+            }
+            event.commit();
+        }
         return methodCallGraph;
     }
 
-    private static void createMethodCallTree(Map<String, ClassInfo> classInfoMap, Map<String, List<String>> methodCallGraph,
-                                             String targetMethodFullName, TreeNode<String> node) {
-        for (Map.Entry<String, List<String>> methodCallEntry : methodCallGraph.entrySet()) {
-            String callingMethodFullName = methodCallEntry.getKey();
-            if (methodCallEntry.getValue().contains(targetMethodFullName)) {
-                String callingMethodClass = callingMethodFullName.substring(0, callingMethodFullName.lastIndexOf('.'));
-                boolean isAbstract = isDerivedFromAbstractClass(classInfoMap, callingMethodClass);
-                TreeNode<String> child = node.addChild(callingMethodFullName);
-                if (!isAbstract) {
-                    createMethodCallTree(classInfoMap, methodCallGraph, callingMethodFullName, child);
-                }
+    // Methods whose class derives from an abstract class end the backward search, resolved once per class
+    private static BitSet findAbstractCallers(Map<String, ClassInfo> classInfoMap, CallGraph callGraph) {
+        ClassHierarchy.Builder hierarchyBuilder = ClassHierarchy.builder();
+        for (ClassInfo classInfo : classInfoMap.values()) {
+            hierarchyBuilder.add(classInfo.classFacts);
+        }
+        ClassHierarchy classHierarchy = hierarchyBuilder.build();
+        BitSet abstractCallers = new BitSet(callGraph.size());
+        for (int methodId = 0; methodId < callGraph.size(); methodId++) {
+            String methodFullName = callGraph.name(methodId);
+            String methodClass = methodFullName.substring(0, methodFullName.lastIndexOf('.'));
+            if (classHierarchy.hasAbstractAncestor(methodClass)) {
+                abstractCallers.set(methodId);
             }
         }
+        return abstractCallers;
     }
 
     private static List<String> collectClassMethods(Map<String, List<String>> methodCallGraph, String vulnerableCodeSource) {
@@ -145,65 +128,104 @@ public class MethodPathFinder {
         return classMethods;
     }
 
-    public static List<List<String>> getAllMethodPaths(TreeNode<String> root) {
-        List<List<String>> result = new ArrayList<>();
-        if (root == null) {
-            return result;
+    // Searches the callers of all vulnerable code sources in one batch and hands every path to the writer thread when found
+    private static void writePathsToFile(Map<String, List<String>> methodCallGraph, CallGraph callGraph, BitSet abstractCallers,
+                                         int maxDepth, long maxPaths, boolean dagFormat, boolean compressedReport) {
+        Map<String, Integer> sourceIndex = new LinkedHashMap<>();
+        for (List<String> vulnerableCodeSources : TARGET_MAP.values()) {
+            for (String vulnerableCodeSource : vulnerableCodeSources) {
+                sourceIndex.putIfAbsent(vulnerableCodeSource, sourceIndex.size());
+            }
         }
-
-        List<String> currentPath = new ArrayList<>();
-        depthFirstSearch(root, currentPath, result);
-        return result;
-    }
-
-    private static void depthFirstSearch(TreeNode<String> node, List<String> currentPath, List<List<String>> result) {
-        if (node == null) {
+        int[][] sourceRoots = new int[sourceIndex.size()][];
+        for (Map.Entry<String, Integer> source : sourceIndex.entrySet()) {
+            sourceRoots[source.getValue()] = findTargetMethods(methodCallGraph, callGraph, source.getKey());
+        }
+        TargetLabels targetLabels = TargetLabels.build(callGraph, sourceRoots, methodId -> !abstractCallers.get(methodId));
+        if (dagFormat) {
+            try {
+                DagReport.write(new File("output2.dag"), DagReport.Layout.PATH_FINDER, maxDepth, maxPaths, targetLabels,
+                        callGraph::name, sourceIndex, TARGET_MAP);
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
             return;
         }
 
-        currentPath.add(node.data);
-
-        if (node.children.isEmpty()) {
-            result.add(new ArrayList<>(currentPath));
-        } else {
-            for (TreeNode<String> child : node.children) {
-                depthFirstSearch(child, currentPath, result);
+        File reportFile = new File(compressedReport ? "output2.txt.gz" : "output2.txt");
+        ReportWriteEvent event = new ReportWriteEvent();
+        event.begin();
+        TargetStats targetStats = new TargetStats();
+        ReportWriter writer;
+        try {
+            writer = new ReportWriter(reportFile, compressedReport);
+            try {
+                for (Map.Entry<String, List<String>> vulnerableCodeMapping : TARGET_MAP.entrySet()) {
+                    String vulnerabilityId = vulnerableCodeMapping.getKey();
+                    writer.write("Vulnerability ID: " + vulnerabilityId + "\n");
+                    for (String vulnerableCodeSource : new LinkedHashSet<>(vulnerableCodeMapping.getValue())) {
+                        writer.write("  Vulnerable Code: " + vulnerableCodeSource + "\n");
+                        event.sections++;
+                        targetStats.start();
+                        SearchStats searchStats = new SearchStats();
+                        // The path limit is shared by all methods of a class-wide target, and as the target method
+                        // itself is the vulnerable code a path needs a caller
+                        long pathCount = targetLabels.forEachPath(sourceIndex.get(vulnerableCodeSource), true, maxDepth,
+                                maxPaths, (methodPath, length) ->
+                                        writeExecutionPath(writer, callGraph, vulnerableCodeSource, methodPath, length),
+                                searchStats);
+                        event.paths += pathCount;
+                        if (pathCount == 0) {
+                            writer.write("      Execution Path: [" + vulnerableCodeSource + "]\n");
+                        }
+                        if (searchStats.isPathLimitReached()) {
+                            writer.write("      Execution Paths: truncated after " + maxPaths + "\n");
+                        }
+                        if (searchStats.isDepthLimitReached()) {
+                            writer.write("      Execution Paths: cut at depth " + maxDepth + "\n");
+                        }
+                        targetStats.stop(vulnerabilityId, vulnerableCodeSource, searchStats);
+                    }
+                }
+            } finally {
+                writer.close();
             }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return;
         }
-
-        currentPath.remove(currentPath.size() - 1);
+        event.end();
+        if (event.shouldCommit()) {
+            event.report = reportFile.getPath();
+            event.bytesWritten = writer.getBytesWritten();
+            event.commit();
+        }
+        targetStats.write(TargetStats.statsFile(reportFile));
+        targetStats.printSlowest(5);
     }
 
-    private static boolean isDerivedFromAbstractClass(Map<String, ClassInfo> classInfoMap, String className) {
-        ClassInfo classInfo = classInfoMap.get(className);
-        while (classInfo != null) {
-            if (classInfo.isAbstract) {
-                return true;
+    private static int[] findTargetMethods(Map<String, List<String>> methodCallGraph, CallGraph callGraph, String vulnerableCodeSource) {
+        List<Integer> targetMethods = new ArrayList<>();
+        // Vulnerable code is for an entire class and not a specific method
+        if (!vulnerableCodeSource.contains(".")) {
+            for (String classMethod : collectClassMethods(methodCallGraph, vulnerableCodeSource)) {
+                targetMethods.add(callGraph.id(classMethod));
             }
-            classInfo = classInfoMap.get(classInfo.superClass);
         }
-        return false;
+        else if (callGraph.id(vulnerableCodeSource) >= 0) {
+            targetMethods.add(callGraph.id(vulnerableCodeSource));
+        }
+        return targetMethods.stream().mapToInt(Integer::intValue).toArray();
     }
 
-    private static void writePathsToFile(Map<String, Map<String, List<List<String>>>> vulnerableCodePathsMap) {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter("output2.txt"))) {
-            for (Map.Entry<String, Map<String, List<List<String>>>> vulnPathMapping : vulnerableCodePathsMap.entrySet()) {
-                String vulnId = vulnPathMapping.getKey();
-                writer.write("Vulnerability ID: " + vulnId + "\n");
-                Map<String, List<List<String>>> vulnPathSubMap = vulnPathMapping.getValue();
-                for (Map.Entry<String, List<List<String>>> vulnerableCodePaths : vulnPathSubMap.entrySet()) {
-                    String vulnerableCode = vulnerableCodePaths.getKey();
-                    writer.write("  Vulnerable Code: " + vulnerableCode + "\n");
-                    List<List<String>> codeExecutionPaths = vulnerableCodePaths.getValue();
-                    for (List<String> codeExecutionPath : codeExecutionPaths) {
-                        Collections.reverse(codeExecutionPath);
-                        writer.write("      Execution Path: " + codeExecutionPath + "\n");
-                    }
-                }
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
+    // Paths run from the vulnerable code outwards, the report lists them from the outermost caller
+    private static void writeExecutionPath(ReportWriter writer, CallGraph callGraph, String vulnerableCodeSource,
+                                           int[] methodPath, int length) throws IOException {
+        StringBuilder executionPath = new StringBuilder("      Execution Path: [");
+        for (int i = length - 1; i > 0; i--) {
+            executionPath.append(callGraph.name(methodPath[i])).append(", ");
         }
+        executionPath.append(vulnerableCodeSource).append("]\n");
+        writer.write(executionPath.toString());
     }
 }
-
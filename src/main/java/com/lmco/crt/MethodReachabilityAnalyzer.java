@@ -1,5 +1,7 @@
 package com.lmco.crt;
 
+import com.lmco.crt.graph.CallGraph;
+import com.lmco.crt.graph.Reachability;
 import org.objectweb.asm.*;
 import org.objectweb.asm.tree.*;
 
@@ -69,24 +71,15 @@ public class MethodReachabilityAnalyzer {
     }
 
     private void findReachableMethods() {
+        CallGraph graph = CallGraph.from(callGraph);
         // Assuming the entry points are public static void main(String[] args) methods
-        for (String method : callGraph.keySet()) {
-            if (method.endsWith("main([Ljava/lang/String;)V")) {
-                traverseCallGraph(method);
-            }
-        }
-    }
-
-    private void traverseCallGraph(String method) {
-        if (reachableMethods.contains(method)) {
-            return;
-        }
-        reachableMethods.add(method);
-        Set<String> calledMethods = callGraph.get(method);
-        if (calledMethods != null) {
-            for (String calledMethod : calledMethods) {
-                traverseCallGraph(calledMethod);
-            }
+        int[] entryPoints = callGraph.keySet().stream()
+                .filter(method -> method.endsWith("main([Ljava/lang/String;)V"))
+                .mapToInt(graph::id)
+                .toArray();
+        Reachability reachability = Reachability.compute(graph, entryPoints);
+        for (int methodId = reachability.nextReachable(0); methodId >= 0; methodId = reachability.nextReachable(methodId + 1)) {
+            reachableMethods.add(graph.name(methodId));
         }
     }
 
@@ -1,5 +1,7 @@
 package com.lmco.crt;
 
+import com.lmco.crt.graph.CallGraph;
+import com.lmco.crt.graph.Reachability;
 import com.lmco.crt.util.Utilities;
 import org.objectweb.asm.*;
 import org.objectweb.asm.tree.*;
@@ -18,8 +20,8 @@ public class MethodReachabilityAnalyzer2 {
     private final Map<String, Set<String>> callGraph = new HashMap<>();
     private final Set<String> reachableMethods = new HashSet<>();
     private final Set<String> allMethods = new HashSet<>();
-    private final Map<String, List<List<String>>> pathsToMethods = new HashMap<>();
-    private static final Map<String, List<String>> TARGET_MAP = Utilities.readCsvFromResources("VulnerableCode.csv");
+    private Reachability reachability;
+    private static final Map<String, List<String>> TARGET_MAP = Utilities.loadTargets(System.getProperty("crt.targets"));
 
     public static void main(String[] args) throws IOException {
 
@@ -111,34 +113,30 @@ public class MethodReachabilityAnalyzer2 {
     }
 
     private void findReachableMethods() {
+        CallGraph graph = CallGraph.from(callGraph);
         // Assuming the entry points are public static void main(String[] args) methods
-        for (String method : callGraph.keySet()) {
-            if (method.endsWith("main([Ljava/lang/String;)V")) {
-                traverseCallGraph(method, new ArrayList<>());
-            }
+        int[] entryPoints = callGraph.keySet().stream()
+                .filter(method -> method.endsWith("main([Ljava/lang/String;)V"))
+                .mapToInt(graph::id)
+                .toArray();
+        reachability = Reachability.compute(graph, entryPoints);
+        for (int methodId = reachability.nextReachable(0); methodId >= 0; methodId = reachability.nextReachable(methodId + 1)) {
+            reachableMethods.add(graph.name(methodId));
         }
     }
 
-    private void traverseCallGraph(String method, List<String> path) {
-        if (reachableMethods.contains(method)) {
-            return;
-        }
-        reachableMethods.add(method);
-        path.add(method);
-
-        if (!pathsToMethods.containsKey(method)) {
-            pathsToMethods.put(method, new ArrayList<>());
+    // Witness path from an entry point to the method, rebuilt from the recorded predecessors
+    private List<String> pathTo(String method) {
+        CallGraph graph = reachability.getGraph();
+        int[] path = reachability.witnessPath(graph.id(method));
+        if (path == null) {
+            return null;
         }
-        pathsToMethods.get(method).add(new ArrayList<>(path));
-
-        Set<String> calledMethods = callGraph.get(method);
-        if (calledMethods != null) {
-            for (String calledMethod : calledMethods) {
-                traverseCallGraph(calledMethod, path);
-            }
+        List<String> methodPath = new ArrayList<>(path.length);
+        for (int methodId : path) {
+            methodPath.add(graph.name(methodId));
         }
-
-        path.remove(path.size() - 1);
+        return methodPath;
     }
 
     private void writeResultsToFile(String reachableFileName, String nonReachableFileName) throws IOException {
@@ -165,10 +163,9 @@ public class MethodReachabilityAnalyzer2 {
             String vulnId = targetMapEntry.getKey();
             List<String> targets = targetMapEntry.getValue();
             for (String target : targets) {
-                if (pathsToMethods.containsKey(target)) {
-                    for (List<String> path : pathsToMethods.get(target)) {
-                        System.out.println(String.join(" -> ", path));
-                    }
+                List<String> path = pathTo(target);
+                if (path != null) {
+                    System.out.println(String.join(" -> ", path));
                 } else {
                     System.out.println("No paths found to the specified method.");
                 }
@@ -178,10 +175,9 @@ public class MethodReachabilityAnalyzer2 {
 
     private void printPathsToMethod(String targetMethod) {
         System.out.println("Paths to method " + targetMethod + ":");
-        if (pathsToMethods.containsKey(targetMethod)) {
-            for (List<String> path : pathsToMethods.get(targetMethod)) {
-                System.out.println(String.join(" -> ", path));
-            }
+        List<String> path = pathTo(targetMethod);
+        if (path != null) {
+            System.out.println(String.join(" -> ", path));
         } else {
             System.out.println("No paths found to the specified method.");
         }
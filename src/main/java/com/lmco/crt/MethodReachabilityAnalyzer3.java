@@ -1,125 +1,291 @@
 package com.lmco.crt;
 
+import com.lmco.crt.graph.CallGraph;
+import com.lmco.crt.graph.CallerDag;
+import com.lmco.crt.graph.ClassHierarchy;
+import com.lmco.crt.graph.PathConsumer;
+import com.lmco.crt.graph.RapidTypeAnalysis;
+import com.lmco.crt.graph.Reachability;
+import com.lmco.crt.graph.SearchStats;
+import com.lmco.crt.graph.TargetLabels;
+import com.lmco.crt.ingest.ClassFacts;
+import com.lmco.crt.ingest.ClassFactsCache;
+import com.lmco.crt.ingest.JarIngestor;
+import com.lmco.crt.ingest.PackageFilter;
+import com.lmco.crt.jfr.AnalysisEvent;
+import com.lmco.crt.jfr.GraphBuildEvent;
+import com.lmco.crt.jfr.ReportWriteEvent;
+import com.lmco.crt.util.TargetStats;
 import com.lmco.crt.util.Utilities;
-import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.Opcodes;
-import org.objectweb.asm.tree.AbstractInsnNode;
-import org.objectweb.asm.tree.ClassNode;
-import org.objectweb.asm.tree.MethodInsnNode;
-import org.objectweb.asm.tree.MethodNode;
 
 import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.*;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
-import java.util.stream.Collectors;
 
 public class MethodReachabilityAnalyzer3 {
 
+    // Part of the snapshot settings: bump it when a change alters the extracted facts, the graph or the report text,
+    // so sections of a report written by an older version are searched again instead of copied
+    private static final int REPORT_VERSION = 1;
     private final Map<String, Set<String>> callGraph = new HashMap<>();
-    private final Set<String> reachableMethods = new HashSet<>();
-    private final Set<String> allMethods = new HashSet<>();
-    private final Map<String, List<List<String>>> pathsToMethods = new HashMap<>();
-    private static final Map<String, List<String>> TARGET_MAP = Utilities.readCsvFromResources("VulnerableCode.csv");
-    private final Map<String, Set<String>> interfaceImplementations = new HashMap<>();
+    private final Map<String, ClassFacts> classFactsByEntry = new LinkedHashMap<>();
+    private CallGraph compactGraph;
+    // Declared methods, and called methods of classes the package filter excluded so they can still be targets
+    private final SignatureIndex signatureIndex = new SignatureIndex();
+    private Reachability reachability;
+    private static final Map<String, List<String>> TARGET_MAP = Utilities.loadTargets(System.getProperty("crt.targets"));
+    private ClassHierarchy classHierarchy;
+    // Methods called through invokevirtual or invokeinterface somewhere, whose targets depend on the receiver type
+    private BitSet virtualCallees;
+    // Classes each method creates with NEW, for methods that create any
+    private Map<Integer, List<String>> createdTypes;
+    private boolean rapidTypeAnalysis;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private File cacheFile;
+    private boolean mappedArchives;
+    private boolean compressedReport;
+    private PackageFilter packageFilter;
+    private int maxDepth = Integer.MAX_VALUE;
+    private long maxPaths = Long.MAX_VALUE;
+    // Incremental state: the previous run, the classes changed since then and the sections that can be copied
+    private AnalysisSnapshot previousSnapshot;
+    private AnalysisSnapshot snapshot = new AnalysisSnapshot();
+    private Set<String> changedClasses;
 
     public static void main(String[] args) throws IOException {
-        File jarFile = new File("jars\\crt-service-all-1.0-SNAPSHOT.jar");
-        MethodReachabilityAnalyzer3 analyzer = new MethodReachabilityAnalyzer3();
-        analyzer.analyzeJar(jarFile);
+        List<File> classpath = Utilities.parseClasspath(System.getProperty("crt.classpath", "jars\\crt-service-all-1.0-SNAPSHOT.jar"));
+        MethodReachabilityAnalyzer3 analyzer = configured(classpath);
+        File reportFile = new File(Boolean.getBoolean("crt.gzip") ? "output6.txt.gz" : "output6.txt");
+        File snapshotFile = new File("output6.snapshot");
+        // With a snapshot of the previous scan only the sections touched by changed classes are searched again
+        if (reportFile.isFile()) {
+            analyzer.setPreviousSnapshot(AnalysisSnapshot.load(snapshotFile));
+        }
+        analyzer.analyzeClasspath(classpath);
         Map<String, List<String>> updatedTargetMap = analyzer.updateVulnerableMethods();
-        Map<String, Map<String, List<List<String>>>> vulnerableCodePathsMap = analyzer.getMethodExecutionPaths2(updatedTargetMap);
-        analyzer.writePathsToFile(vulnerableCodePathsMap);
+        // crt.format=dag writes the shared caller DAG for DagReport instead of every path
+        if ("dag".equals(System.getProperty("crt.format"))) {
+            analyzer.writeDagFile(updatedTargetMap, new File("output6.dag"));
+        } else if (analyzer.writePathsToFile(updatedTargetMap, reportFile)) {
+            analyzer.getSnapshot().save(snapshotFile);
+        } else {
+            // Its sections point into a report that may no longer be there
+            Files.deleteIfExists(snapshotFile.toPath());
+        }
         System.out.println("breakpoint");
     }
 
-    private void writePathsToFile(Map<String, Map<String, List<List<String>>>> vulnerableCodePathsMap) {
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter("output6.txt"))) {
-            for (Map.Entry<String, Map<String, List<List<String>>>> vulnPathMapping : vulnerableCodePathsMap.entrySet()) {
-                String vulnId = vulnPathMapping.getKey();
-                writer.write("Vulnerability ID: " + vulnId + "\n");
-                Map<String, List<List<String>>> vulnPathSubMap = vulnPathMapping.getValue();
-                for (Map.Entry<String, List<List<String>>> vulnerableCodePaths : vulnPathSubMap.entrySet()) {
-                    String vulnerableCode = vulnerableCodePaths.getKey();
-                    writer.write("  Vulnerable Code: " + vulnerableCode + "\n");
-                    List<List<String>> codeExecutionPaths = vulnerableCodePaths.getValue();
-                    if (!codeExecutionPaths.isEmpty()) {
-                        for (List<String> codeExecutionPath : codeExecutionPaths) {
-                            writer.write("      Execution Path: \n");
-                            StringBuilder sb = new StringBuilder("          ");
-                            Collections.reverse(codeExecutionPath);
-                            for (String path : codeExecutionPath) {
-                                sb.append(" ");
-                                writer.write(sb + "->" + path + "\n");
+    // An analyzer set up from the crt.* system properties, with its class cache named after the first classpath entry
+    static MethodReachabilityAnalyzer3 configured(List<File> classpath) {
+        return configured(classpath.get(0).getName());
+    }
+
+    // Programs analyzed side by side need different names, since a full ingest keeps only the entries it looked up
+    static MethodReachabilityAnalyzer3 configured(String cacheName) {
+        MethodReachabilityAnalyzer3 analyzer = new MethodReachabilityAnalyzer3();
+        analyzer.setParallelism(Integer.getInteger("crt.parallelism", Runtime.getRuntime().availableProcessors()));
+        analyzer.setCacheFile(new File(System.getProperty("crt.cacheDir", "cache"), cacheName + ".facts"));
+        analyzer.setMappedArchives(Boolean.getBoolean("crt.mmap"));
+        analyzer.setPackageFilter(PackageFilter.parse(System.getProperty("crt.include"), System.getProperty("crt.exclude"),
+                System.getProperty("crt.excludeMode")));
+        analyzer.setSearchLimits(Integer.getInteger("crt.maxDepth", 64), Long.getLong("crt.maxPaths", 100_000L));
+        analyzer.setRapidTypeAnalysis(Boolean.getBoolean("crt.rta"));
+        analyzer.setCompressedReport(Boolean.getBoolean("crt.gzip"));
+        return analyzer;
+    }
+
+    // Searches the callers of all targets in one batch and hands each execution path to the writer thread when found;
+    // false if the report could not be written, and then the snapshot must not be saved
+    boolean writePathsToFile(Map<String, List<String>> updatedTargetMap, File reportFile) {
+        Map<String, Integer> targetIndex = targetIndex(updatedTargetMap);
+        TargetStats targetStats = writeReport(updatedTargetMap, targetIndex, targetLabels(targetIndex), reportFile);
+        if (targetStats == null) {
+            return false;
+        }
+        targetStats.write(TargetStats.statsFile(reportFile));
+        targetStats.printSlowest(5);
+        return true;
+    }
+
+    // Writes the paths of labels built beforehand; null if the report could not be written
+    TargetStats writeReport(Map<String, List<String>> updatedTargetMap, Map<String, Integer> targetIndex,
+                            TargetLabels targetLabels, File reportFile) {
+        List<Set<String>> targetCones = coneClasses(targetLabels);
+
+        File tempFile = new File(reportFile.getPath() + ".tmp");
+        boolean incremental = previousSnapshot != null && changedClasses != null && reportFile.isFile()
+                && previousSnapshot.hasSearchLimits(maxDepth, maxPaths)
+                && previousSnapshot.hasSettings(analysisSettings())
+                && previousSnapshot.isCompressed() == compressedReport
+                && matchesPreviousReport(reportFile);
+        snapshot.setSearchLimits(maxDepth, maxPaths);
+        snapshot.setSettings(analysisSettings());
+        snapshot.setCompressed(compressedReport);
+        // Set again once the new report is in place
+        snapshot.setReport(-1, 0);
+        ReportWriteEvent event = new ReportWriteEvent();
+        event.begin();
+        TargetStats targetStats = new TargetStats();
+        ReportWriter writer;
+        try (FileChannel previousReport = incremental ? FileChannel.open(reportFile.toPath()) : null) {
+            writer = new ReportWriter(tempFile, compressedReport);
+            try {
+                for (Map.Entry<String, List<String>> targetMapEntry : updatedTargetMap.entrySet()) {
+                    String vulnId = targetMapEntry.getKey();
+                    writer.write("Vulnerability ID: " + vulnId + "\n");
+                    for (String target : new LinkedHashSet<>(targetMapEntry.getValue())) {
+                        int targetId = targetIndex.get(target);
+                        String sectionKey = AnalysisSnapshot.sectionKey(vulnId, target);
+                        Set<String> coneClasses = targetCones.get(targetId);
+                        writer.beginSection();
+                        event.sections++;
+                        targetStats.start();
+                        if (incremental && isUnchangedSection(sectionKey, coneClasses)) {
+                            long[] section = previousSnapshot.getSection(sectionKey);
+                            writer.copy(previousReport, section[0], section[1]);
+                            event.sectionsCopied++;
+                            targetStats.stop(vulnId, target, null);
+                        } else {
+                            writer.write("  Vulnerable Code: " + target + "\n");
+                            SearchStats searchStats = new SearchStats();
+                            long pathCount = targetLabels.forEachPath(targetId, targetLabels.rootNodes(targetId)[0],
+                                    maxDepth, maxPaths,
+                                    (methodPath, length) -> writeExecutionPath(writer, methodPath, length), searchStats);
+                            if (pathCount == 0) {
+                                writer.write("      Execution Path: N/A \n");
                             }
+                            if (searchStats.isPathLimitReached()) {
+                                writer.write("      Execution Paths: truncated after " + maxPaths + " \n");
+                            }
+                            if (searchStats.isDepthLimitReached()) {
+                                writer.write("      Execution Paths: cut at depth " + maxDepth + " \n");
+                            }
+                            event.paths += pathCount;
+                            targetStats.stop(vulnId, target, searchStats);
                         }
+                        // Offsets are only known once the writer thread has written the section
+                        writer.endSection((offset, length) ->
+                                snapshot.putSection(sectionKey, coneClasses, offset, length));
                     }
-                    else {
-                        writer.write("      Execution Path: N/A \n");
-                    }
-
                 }
+            } finally {
+                // Waits for the writer thread, before the previous report it copies from is closed
+                writer.close();
             }
         } catch (IOException e) {
             e.printStackTrace();
+            tempFile.delete();
+            return null;
         }
+        event.end();
+        if (event.shouldCommit()) {
+            event.report = reportFile.getPath();
+            event.bytesWritten = writer.getBytesWritten();
+            event.commit();
+        }
+        try {
+            Files.move(tempFile.toPath(), reportFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            snapshot.setReport(reportFile.length(), AnalysisSnapshot.checksum(reportFile));
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+        return targetStats;
     }
 
-    private Map<String, Map<String, List<List<String>>>> getMethodExecutionPaths2(Map<String, List<String>> updatedTargetMap) {
-        Map<String, Map<String, List<List<String>>>> vulnerableCodePathsMap = new HashMap<>();
-        for (Map.Entry<String, List<String>> targetMapEntry : updatedTargetMap.entrySet()) {
-            Map<String, List<List<String>>> methodPathsMap = new HashMap<>();
-            String vulnId = targetMapEntry.getKey();
-            List<String> targets = targetMapEntry.getValue();
-            for (String target : targets) {
-                TreeNode<String> root = new TreeNode<>(target);
-                findCallingMethods(root);
-                System.out.println("breakpoint");
-                List<List<String>> allMethodPaths = getAllMethodPaths(root);
-                methodPathsMap.put(root.data, allMethodPaths);
+    private String analysisSettings() {
+        return "version=" + REPORT_VERSION + ",excludeMode=" + (packageFilter != null ? packageFilter.getMode() : "")
+                + ",rta=" + rapidTypeAnalysis;
+    }
+
+    private boolean matchesPreviousReport(File reportFile) {
+        try {
+            if (previousSnapshot.matchesReport(reportFile)) {
+                return true;
             }
-            vulnerableCodePathsMap.put(vulnId, methodPathsMap);
+            System.out.println("Previous report changed since the snapshot, searching every section again");
+        } catch (IOException e) {
+            System.err.println("Cannot check the previous report: " + reportFile + " - " + e.getMessage());
         }
-        return vulnerableCodePathsMap;
+        return false;
     }
 
-    public static List<List<String>> getAllMethodPaths(TreeNode<String> root) {
-        List<List<String>> result = new ArrayList<>();
-        if (root == null) {
-            return result;
+    // The callers of all targets as one DAG, from which DagReport expands paths when they are needed
+    void writeDagFile(Map<String, List<String>> updatedTargetMap, File dagFile) {
+        Map<String, Integer> targetIndex = targetIndex(updatedTargetMap);
+        try {
+            DagReport.write(dagFile, DagReport.Layout.ANALYZER, maxDepth, maxPaths, targetLabels(targetIndex),
+                    compactGraph::name, targetIndex, updatedTargetMap);
+        } catch (IOException e) {
+            e.printStackTrace();
         }
+    }
 
-        List<String> currentPath = new ArrayList<>();
-        depthFirstSearch(root, currentPath, result);
-        return result;
+    static Map<String, Integer> targetIndex(Map<String, List<String>> updatedTargetMap) {
+        Map<String, Integer> targetIndex = new LinkedHashMap<>();
+        for (List<String> targets : updatedTargetMap.values()) {
+            for (String target : targets) {
+                targetIndex.putIfAbsent(target, targetIndex.size());
+            }
+        }
+        return targetIndex;
     }
 
-    private static void depthFirstSearch(TreeNode<String> node, List<String> currentPath, List<List<String>> result) {
-        if (node == null) {
-            return;
+    TargetLabels targetLabels(Map<String, Integer> targetIndex) {
+        int[][] targetRoots = new int[targetIndex.size()][];
+        for (Map.Entry<String, Integer> target : targetIndex.entrySet()) {
+            targetRoots[target.getValue()] = new int[]{compactGraph.id(target.getKey())};
         }
+        return TargetLabels.build(compactGraph, targetRoots, methodId -> true);
+    }
 
-        currentPath.add(node.data);
+    // Paths run from the target outwards, the report lists them from the outermost caller
+    private void writeExecutionPath(ReportWriter writer, int[] methodPath, int length) throws IOException {
+        StringBuilder path = new StringBuilder("      Execution Path: \n");
+        StringBuilder sb = new StringBuilder("          ");
+        for (int i = length - 1; i >= 0; i--) {
+            sb.append(" ");
+            path.append(sb).append("->").append(compactGraph.name(methodPath[i])).append("\n");
+        }
+        writer.write(path.toString());
+    }
 
-        if (node.children.isEmpty()) {
-            result.add(new ArrayList<>(currentPath));
-        } else {
-            for (TreeNode<String> child : node.children) {
-                depthFirstSearch(child, currentPath, result);
+    // Classes in each target's backward cone, collected in one pass over the labelled nodes
+    private List<Set<String>> coneClasses(TargetLabels targetLabels) {
+        List<Set<String>> targetCones = new ArrayList<>(targetLabels.targetCount());
+        for (int target = 0; target < targetLabels.targetCount(); target++) {
+            targetCones.add(new HashSet<>());
+        }
+        CallerDag callerDag = targetLabels.getDag();
+        for (int node = 0; node < callerDag.size(); node++) {
+            String method = compactGraph.name(callerDag.methodId(node));
+            String methodClass = method.substring(0, method.indexOf('.'));
+            for (int target = targetLabels.nextTarget(node, 0); target >= 0; target = targetLabels.nextTarget(node, target + 1)) {
+                targetCones.get(target).add(methodClass);
             }
         }
-
-        currentPath.remove(currentPath.size() - 1);
+        return targetCones;
     }
 
-    public void findCallingMethods(TreeNode<String> node) {
-        for (Map.Entry<String, Set<String>> entry : callGraph.entrySet()) {
-            String callingMethod = entry.getKey();
-            if (entry.getValue().contains(node.data)) {
-                TreeNode<String> child = node.addChild(callingMethod);
-                findCallingMethods(child);
+    // A section can be copied from the previous report if no changed class was in its old or its new backward cone
+    private boolean isUnchangedSection(String sectionKey, Set<String> coneClasses) {
+        if (previousSnapshot == null || changedClasses == null || previousSnapshot.getSection(sectionKey) == null) {
+            return false;
+        }
+        Set<String> previousConeClasses = previousSnapshot.getCone(sectionKey);
+        for (String changedClass : changedClasses) {
+            if (coneClasses.contains(changedClass) || previousConeClasses.contains(changedClass)) {
+                return false;
             }
         }
+        return true;
     }
 
     private Map<String, Map<String, List<List<String>>>> getMethodExecutionPaths(Map<String, List<String>> updatedTargetMap) {
@@ -130,11 +296,10 @@ public class MethodReachabilityAnalyzer3 {
             String vulnId = targetMapEntry.getKey();
             List<String> targets = targetMapEntry.getValue();
             for (String target : targets) {
-                if (pathsToMethods.containsKey(target)) {
-                    for (List<String> path : pathsToMethods.get(target)) {
-                        methodPaths.add(path);
-                        System.out.println(String.join(" -> ", path));
-                    }
+                List<String> path = pathTo(target);
+                if (path != null) {
+                    methodPaths.add(path);
+                    System.out.println(String.join(" -> ", path));
                 } else {
                     System.out.println("No paths found to the specified method.");
                 }
@@ -147,21 +312,14 @@ public class MethodReachabilityAnalyzer3 {
 
     private Map<String, List<String>> updateVulnerableMethods() {
         Map<String, List<String>> updatedTargetMap = new HashMap<>(TARGET_MAP);
+        // Feeds name the same target under many IDs, each is resolved once
+        Map<String, List<String>> resolvedTargets = new HashMap<>();
         for (Map.Entry<String, List<String>> targetMapEntry : updatedTargetMap.entrySet()) {
             List<String> updatedTargets = new ArrayList<>();
             String vulnId = targetMapEntry.getKey();
             List<String> targets = targetMapEntry.getValue();
             for (String target : targets) {
-                List<String> newTargets;
-                // Target is a class and method
-                if (target.contains(".")) {
-                    String[] targetParts = target.split("\\.");
-                    newTargets = findMethodsByClassAndName(targetParts[0], targetParts[1]);
-                }
-                else {
-                    newTargets = findMethodsByClassAndName(target, null);
-                }
-                updatedTargets.addAll(newTargets);
+                updatedTargets.addAll(resolvedTargets.computeIfAbsent(target, this::resolveTarget));
             }
             updatedTargetMap.put(vulnId, updatedTargets);
         }
@@ -169,73 +327,311 @@ public class MethodReachabilityAnalyzer3 {
         return updatedTargetMap;
     }
 
+    // Methods a target names: a class, a class and method, optionally with a descriptor, or a prefix ending in *
+    public List<String> resolveTarget(String target) {
+        int descStart = target.indexOf('(');
+        int nameStart = target.lastIndexOf('.', descStart >= 0 ? descStart : target.length()) + 1;
+        // Target is a class and method, optionally with its descriptor
+        if (nameStart > 0) {
+            return signatureIndex.resolve(target.substring(0, nameStart - 1),
+                    target.substring(nameStart, descStart >= 0 ? descStart : target.length()),
+                    descStart >= 0 ? target.substring(descStart) : null);
+        }
+        return findMethodsByClassAndName(target, null);
+    }
+
     public List<String> findMethodsByClassAndName(String className, String methodName) {
-        return allMethods.stream()
-                .filter(method -> method.startsWith(className + ".") &&
-                        (methodName == null || methodName.isEmpty() || method.contains("." + methodName + "(")))
-                .collect(Collectors.toList());
+        return signatureIndex.resolve(className, methodName, null);
+    }
+
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    // Classes whose facts are found in this file are not parsed again; null disables the cache
+    public void setCacheFile(File cacheFile) {
+        this.cacheFile = cacheFile;
+    }
+
+    // Archives are memory-mapped and their central directory read directly instead of going through JarFile
+    public void setMappedArchives(boolean mappedArchives) {
+        this.mappedArchives = mappedArchives;
+    }
+
+    // Classes outside the analyzed packages are not parsed, and depending on the mode calls into them are kept or dropped
+    public void setPackageFilter(PackageFilter packageFilter) {
+        this.packageFilter = packageFilter;
+    }
+
+    // Backward searches stop a path after maxDepth methods and a target after maxPaths paths
+    public void setSearchLimits(int maxDepth, long maxPaths) {
+        this.maxDepth = maxDepth;
+        this.maxPaths = maxPaths;
+    }
+
+    // The text report is written gzip-compressed, one member per section so unchanged sections can still be copied
+    public void setCompressedReport(boolean compressedReport) {
+        this.compressedReport = compressedReport;
+    }
+
+    // Virtual calls only dispatch to types some reachable method instantiates instead of to every subtype
+    public void setRapidTypeAnalysis(boolean rapidTypeAnalysis) {
+        this.rapidTypeAnalysis = rapidTypeAnalysis;
+    }
+
+    public void setPreviousSnapshot(AnalysisSnapshot previousSnapshot) {
+        this.previousSnapshot = previousSnapshot;
+    }
+
+    public AnalysisSnapshot getSnapshot() {
+        return snapshot;
     }
 
     public void analyzeJar(File jarFile) throws IOException {
+        analyzeClasspath(Collections.singletonList(jarFile));
+    }
+
+    // Jars, Spring Boot or WAR archives with their nested jars, and class directories, analyzed as one program
+    public void analyzeClasspath(List<File> classpath) throws IOException {
+        AnalysisEvent event = new AnalysisEvent();
+        event.begin();
+        ingest(classpath, entryName -> true, true);
+        if (previousSnapshot != null) {
+            changedClasses = previousSnapshot.changedClasses(snapshot);
+            System.out.println("Changed classes since previous scan: " + changedClasses.size());
+        }
+        compactGraph = buildCompactGraph();
+        findReachableMethods();
+        event.end();
+        if (event.shouldCommit()) {
+            event.classpath = classpath.toString();
+            event.classes = classFactsByEntry.size();
+            event.methods = compactGraph.size();
+            event.reachableMethods = reachability.reachableCount();
+            event.commit();
+        }
+    }
+
+    /*
+     * Brings an analyzed jar up to date with a rebuilt one. Only entries whose CRC changed are parsed; the classes
+     * they replace are removed from the call graph before the new versions are added, and the next
+     * writePathsToFile call only searches the sections whose cone touches a changed class. Entries of nested jars
+     * are always read again, and found in the class facts cache when they did not change.
+     */
+    public void updateJar(File jarFile) throws IOException {
+        AnalysisSnapshot next = new AnalysisSnapshot();
         try (JarFile jar = new JarFile(jarFile)) {
             Enumeration<JarEntry> entries = jar.entries();
             while (entries.hasMoreElements()) {
                 JarEntry entry = entries.nextElement();
-                if (entry.getName().endsWith(".class") && !entry.getName().contains("META-INF/")) {
-                    try {
-                        analyzeClass(jar, entry);
-                    } catch (SecurityException | IOException e) {
-                        System.err.println("Skipping entry due to error: " + entry.getName() + " - " + e.getMessage());
-                    }
+                ClassFacts classFacts = classFactsByEntry.get(entry.getName());
+                if (classFacts != null && Long.valueOf(entry.getCrc()).equals(snapshot.getCrc(entry.getName()))) {
+                    next.addEntry(entry.getName(), entry.getCrc(), classFacts.getName());
                 }
             }
         }
+
+        previousSnapshot = snapshot;
+        snapshot = next;
+        Iterator<Map.Entry<String, ClassFacts>> iterator = classFactsByEntry.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, ClassFacts> entry = iterator.next();
+            if (next.getCrc(entry.getKey()) == null) {
+                removeClass(entry.getValue());
+                iterator.remove();
+            }
+        }
+        // The filter sees every class entry in archive order, which is the order a full run adds classes in
+        List<String> entryOrder = new ArrayList<>();
+        ingest(Collections.singletonList(jarFile), entryName -> {
+            entryOrder.add(entryName);
+            return next.getCrc(entryName) == null;
+        }, false);
+        Map<String, ClassFacts> orderedFacts = new LinkedHashMap<>();
+        for (String entryName : entryOrder) {
+            ClassFacts classFacts = classFactsByEntry.get(entryName);
+            if (classFacts != null) {
+                orderedFacts.put(entryName, classFacts);
+            }
+        }
+        classFactsByEntry.clear();
+        classFactsByEntry.putAll(orderedFacts);
+        changedClasses = previousSnapshot.changedClasses(snapshot);
+        System.out.println("Changed classes since previous scan: " + changedClasses.size());
+
+        compactGraph = buildCompactGraph();
         findReachableMethods();
     }
 
-    private void analyzeClass(JarFile jar, JarEntry entry) throws IOException {
-        try (InputStream inputStream = jar.getInputStream(entry)) {
-            ClassReader classReader = new ClassReader(inputStream);
-            ClassNode classNode = new ClassNode();
-            classReader.accept(classNode, 0);
+    // Only a full ingest saves the class cache, which keeps just the entries a run looked up
+    private void ingest(List<File> classpath, Predicate<String> entryFilter, boolean saveCache) throws IOException {
+        JarIngestor ingestor = new JarIngestor(parallelism);
+        ingestor.setMappedArchives(mappedArchives);
+        ingestor.setPackageFilter(packageFilter);
+        ClassFactsCache cache = cacheFile != null ? ClassFactsCache.load(cacheFile) : null;
+        ingestor.setCache(cache);
+        ingestor.ingest(classpath, entryFilter, (entryName, crc, classFacts) -> {
+            classFactsByEntry.put(entryName, classFacts);
+            snapshot.addEntry(entryName, crc, classFacts.getName());
+            analyzeClass(classFacts);
+        });
+        if (cache != null) {
+            System.out.println("Class cache: " + cache.getHits() + " cached, " + cache.getMisses() + " parsed");
+            if (saveCache) {
+                cache.save();
+            }
+        }
+    }
+
+    private CallGraph buildCompactGraph() {
+        GraphBuildEvent event = new GraphBuildEvent();
+        event.begin();
+        CallGraph.Builder graphBuilder = CallGraph.builder();
+        virtualCallees = new BitSet();
+        createdTypes = new HashMap<>();
+        for (ClassFacts classFacts : classFactsByEntry.values()) {
+            for (ClassFacts.MethodFacts method : classFacts.getMethods()) {
+                int methodId = graphBuilder.declare(method.getSignature());
+                if (!method.getInstantiatedTypes().isEmpty()) {
+                    createdTypes.put(methodId, method.getInstantiatedTypes());
+                }
+                for (ClassFacts.CallSite call : method.getCalls()) {
+                    int calleeId = graphBuilder.method(call.getSignature());
+                    graphBuilder.addCall(methodId, calleeId);
+                    if (call.getOpcode() == Opcodes.INVOKEVIRTUAL || call.getOpcode() == Opcodes.INVOKEINTERFACE) {
+                        virtualCallees.set(calleeId);
+                    }
+                }
+            }
+        }
+        classHierarchy = ClassHierarchy.of(classFactsByEntry.values());
+        CallGraph graph = graphBuilder.build();
+        event.end();
+        if (event.shouldCommit()) {
+            event.classes = classFactsByEntry.size();
+            event.methods = graph.size();
+            event.edges = graph.edgeCount();
+            event.commit();
+        }
+        return graph;
+    }
 
-            if ((classNode.access & Opcodes.ACC_INTERFACE) != 0) {
-                // It's an interface, map its methods to the implementations
-                for (String interfaceName : classNode.interfaces) {
-                    interfaceImplementations.computeIfAbsent(interfaceName, k -> new HashSet<>()).add(classNode.name);
+    private void analyzeClass(ClassFacts classFacts) {
+        for (ClassFacts.MethodFacts method : classFacts.getMethods()) {
+            String methodName = method.getSignature();
+            signatureIndex.add(methodName);
+            Set<String> calledMethods = new HashSet<>();
+            for (ClassFacts.CallSite call : method.getCalls()) {
+                calledMethods.add(call.getSignature());
+            }
+            callGraph.put(methodName, calledMethods);
+            for (String calledMethod : calledMethods) {
+                if (isBoundaryMethod(calledMethod)) {
+                    signatureIndex.add(calledMethod);
                 }
             }
+        }
+    }
 
-            for (MethodNode method : classNode.methods) {
-                String methodName = classNode.name + "." + method.name + method.desc;
-                allMethods.add(methodName);
-                Set<String> calledMethods = new HashSet<>();
-                if (method.instructions != null) {
-                    for (AbstractInsnNode insn : method.instructions) {
-                        if (insn.getType() == AbstractInsnNode.METHOD_INSN) {
-                            MethodInsnNode methodInsn = (MethodInsnNode) insn;
-                            calledMethods.add(methodInsn.owner + "." + methodInsn.name + methodInsn.desc);
-                        }
+    private void removeClass(ClassFacts classFacts) {
+        for (ClassFacts.MethodFacts method : classFacts.getMethods()) {
+            signatureIndex.remove(method.getSignature());
+            Set<String> calledMethods = callGraph.remove(method.getSignature());
+            if (calledMethods != null) {
+                for (String calledMethod : calledMethods) {
+                    if (isBoundaryMethod(calledMethod)) {
+                        signatureIndex.remove(calledMethod);
                     }
                 }
-                callGraph.put(methodName, calledMethods);
             }
         }
     }
 
+    private boolean isBoundaryMethod(String method) {
+        return packageFilter != null && !packageFilter.accepts(method.substring(0, method.lastIndexOf('.')));
+    }
+
     private void findReachableMethods() {
-        // Assuming the entry points are public static void main(String[] args) methods
-        for (String method : callGraph.keySet()) {
-            //traverseCallGraph(method, new ArrayList<>());
-            if (isEntryPoint(method)) {
-                traverseCallGraph(method, new ArrayList<>());
+        int[] entryPoints = callGraph.keySet().stream()
+                .filter(this::isEntryPoint)
+                .mapToInt(compactGraph::id)
+                .toArray();
+        if (rapidTypeAnalysis) {
+            RapidTypeAnalysis analysis = RapidTypeAnalysis.compute(compactGraph, entryPoints, classHierarchy, virtualCallees,
+                    methodId -> createdTypes.getOrDefault(methodId, Collections.emptyList()));
+            System.out.println("Rapid type analysis: " + analysis.getInstantiatedTypes().size() + " instantiated types after "
+                    + analysis.getRounds() + " rounds");
+            reachability = analysis.getReachability();
+        } else {
+            reachability = Reachability.compute(compactGraph, entryPoints, dispatchTargets(compactGraph));
+        }
+    }
+
+    // Implementations a virtual or interface call may dispatch to, resolved through the class hierarchy once per method
+    private IntFunction<int[]> dispatchTargets(CallGraph graph) {
+        int[][] targetIds = new int[graph.size()][];
+        int[] noTargets = new int[0];
+        return methodId -> {
+            if (targetIds[methodId] == null) {
+                targetIds[methodId] = !virtualCallees.get(methodId) ? noTargets
+                        : Arrays.stream(classHierarchy.resolveVirtual(graph.name(methodId)))
+                                .mapToInt(graph::id)
+                                .filter(targetId -> targetId >= 0)
+                                .toArray();
             }
+            return targetIds[methodId];
+        };
+    }
+
+    public int methodCount() {
+        return compactGraph.size();
+    }
 
-//            if (method.endsWith("main([Ljava/lang/String;)V")) {
-//
-//                traverseCallGraph(method, new ArrayList<>());
-//            }
+    public int reachableCount() {
+        return reachability.reachableCount();
+    }
+
+    public String methodName(int methodId) {
+        return compactGraph.name(methodId);
+    }
+
+    // Direct callers of a method, empty for a method the call graph does not know
+    public List<String> callersOf(String method) {
+        int methodId = compactGraph.id(method);
+        List<String> callers = new ArrayList<>();
+        if (methodId >= 0) {
+            for (int i = compactGraph.callerStart(methodId); i < compactGraph.callerEnd(methodId); i++) {
+                callers.add(compactGraph.name(compactGraph.caller(i)));
+            }
         }
+        return callers;
+    }
+
+    /*
+     * Caller paths of the methods, sharing maxPaths; paths hold method IDs from the method to the outermost caller.
+     * Stats record whether a limit left paths out, for which roots after the limit are still asked for one path.
+     */
+    public long forEachPathTo(List<String> methods, int maxDepth, long maxPaths, PathConsumer consumer,
+                              SearchStats stats) throws IOException {
+        int[] roots = methods.stream().mapToInt(compactGraph::id).filter(methodId -> methodId >= 0).toArray();
+        CallerDag callerDag = CallerDag.build(compactGraph, roots, methodId -> true);
+        int[] rootNodes = new int[callerDag.rootCount()];
+        Arrays.setAll(rootNodes, root -> root);
+        return callerDag.forEachPath(rootNodes, node -> true, false, maxDepth, maxPaths, consumer, stats);
+    }
+
+    // Witness path from an entry point to the method, rebuilt from the recorded predecessors
+    public List<String> pathTo(String method) {
+        CallGraph graph = reachability.getGraph();
+        int[] path = reachability.witnessPath(graph.id(method));
+        if (path == null) {
+            return null;
+        }
+        List<String> methodPath = new ArrayList<>(path.length);
+        for (int methodId : path) {
+            methodPath.add(graph.name(methodId));
+        }
+        return methodPath;
     }
 
     private boolean isEntryPoint(String method) {
@@ -258,34 +654,4 @@ public class MethodReachabilityAnalyzer3 {
         // For simplicity, let's assume if it is not a private or protected method name, we treat it as public.
         return !methodName.startsWith("private") && !methodName.startsWith("protected");
     }
-
-    private void traverseCallGraph(String method, List<String> path) {
-        if (reachableMethods.contains(method)) {
-            return;
-        }
-
-        reachableMethods.add(method);
-        path.add(method);
-
-        if (!pathsToMethods.containsKey(method)) {
-            pathsToMethods.put(method, new ArrayList<>());
-        }
-        pathsToMethods.get(method).add(new ArrayList<>(path));
-
-        Set<String> calledMethods = callGraph.get(method);
-        if (calledMethods != null) {
-            for (String calledMethod : calledMethods) {
-                traverseCallGraph(calledMethod, path);
-                String className = calledMethod.substring(0, calledMethod.indexOf('.'));
-                if (interfaceImplementations.containsKey(className)) {
-                    for (String implClass : interfaceImplementations.get(className)) {
-                        String implMethod = implClass + calledMethod.substring(calledMethod.indexOf('.'));
-                        traverseCallGraph(implMethod, path);
-                    }
-                }
-            }
-        }
-
-        path.remove(path.size() - 1);
-    }
 }
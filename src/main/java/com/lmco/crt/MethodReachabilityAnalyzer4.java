@@ -1,5 +1,9 @@
 package com.lmco.crt;
 
+import com.lmco.crt.graph.CallGraph;
+import com.lmco.crt.graph.ClassHierarchy;
+import com.lmco.crt.graph.RapidTypeAnalysis;
+import com.lmco.crt.graph.Reachability;
 import org.objectweb.asm.*;
 import org.objectweb.asm.tree.*;
 
@@ -8,6 +12,7 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.*;
+import java.util.function.IntFunction;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 import java.util.stream.Collectors;
@@ -17,14 +22,20 @@ public class MethodReachabilityAnalyzer4 {
     private final Map<String, Set<String>> callGraph = new HashMap<>();
     private final Set<String> reachableMethods = new HashSet<>();
     private final Set<String> allMethods = new HashSet<>();
-    private final Map<String, List<List<String>>> pathsToMethods = new HashMap<>();
-    private final Map<String, Set<String>> interfaceImplementations = new HashMap<>();
+    private Reachability reachability;
+    private final ClassHierarchy.Builder hierarchyBuilder = ClassHierarchy.builder();
+    // Methods called through invokevirtual or invokeinterface somewhere, whose targets depend on the receiver type
+    private final Set<String> virtualCallees = new HashSet<>();
+    // Classes each method creates with NEW, for methods that create any
+    private final Map<String, List<String>> createdTypes = new HashMap<>();
+    private boolean rapidTypeAnalysis;
 
     public static void main(String[] args) throws IOException {
 
         File jarFile = new File("jars\\crt-service-all-1.0-SNAPSHOT.jar");
         String targetMethod = "com/fasterxml/jackson/databind/SerializerProvider.findTypedValueSerializer(Lcom/fasterxml/jackson/databind/JavaType;ZLcom/fasterxml/jackson/databind/BeanProperty;)Lcom/fasterxml/jackson/databind/JsonSerializer";
         MethodReachabilityAnalyzer4 analyzer = new MethodReachabilityAnalyzer4();
+        analyzer.setRapidTypeAnalysis(Boolean.getBoolean("crt.rta"));
         analyzer.analyzeJar(jarFile);
         analyzer.writeResultsToFile("ReachableMethods", "NonReachableMethods");
         analyzer.printPathsToMethod(targetMethod);
@@ -39,6 +50,11 @@ public class MethodReachabilityAnalyzer4 {
         }
     }
 
+    // Virtual calls only dispatch to types some reachable method instantiates instead of to every subtype
+    public void setRapidTypeAnalysis(boolean rapidTypeAnalysis) {
+        this.rapidTypeAnalysis = rapidTypeAnalysis;
+    }
+
     public void analyzeJar(File jarFile) throws IOException {
         try (JarFile jar = new JarFile(jarFile)) {
             Enumeration<JarEntry> entries = jar.entries();
@@ -62,14 +78,9 @@ public class MethodReachabilityAnalyzer4 {
             ClassNode classNode = new ClassNode();
             classReader.accept(classNode, 0);
 
-            if ((classNode.access & Opcodes.ACC_INTERFACE) != 0) {
-                // It's an interface, map its methods to the implementations
-                for (String interfaceName : classNode.interfaces) {
-                    interfaceImplementations.computeIfAbsent(interfaceName, k -> new HashSet<>()).add(classNode.name);
-                }
-            }
-
+            hierarchyBuilder.addClass(classNode.name, classNode.access, classNode.superName, classNode.interfaces);
             for (MethodNode method : classNode.methods) {
+                hierarchyBuilder.addMethod(classNode.name, method.name, method.desc, method.access);
                 String methodName = classNode.name + "." + method.name + method.desc;
                 allMethods.add(methodName);
                 Set<String> calledMethods = new HashSet<>();
@@ -78,6 +89,11 @@ public class MethodReachabilityAnalyzer4 {
                         if (insn.getType() == AbstractInsnNode.METHOD_INSN) {
                             MethodInsnNode methodInsn = (MethodInsnNode) insn;
                             calledMethods.add(methodInsn.owner + "." + methodInsn.name + methodInsn.desc);
+                            if (methodInsn.getOpcode() == Opcodes.INVOKEVIRTUAL || methodInsn.getOpcode() == Opcodes.INVOKEINTERFACE) {
+                                virtualCallees.add(methodInsn.owner + "." + methodInsn.name + methodInsn.desc);
+                            }
+                        } else if (insn.getOpcode() == Opcodes.NEW) {
+                            createdTypes.computeIfAbsent(methodName, k -> new ArrayList<>()).add(((TypeInsnNode) insn).desc);
                         }
                     }
                 }
@@ -87,14 +103,61 @@ public class MethodReachabilityAnalyzer4 {
     }
 
     private void findReachableMethods() {
+        CallGraph graph = CallGraph.from(callGraph);
         // Start from main methods, constructors, and public methods
-        for (String method : callGraph.keySet()) {
-            if (isEntryPoint(method)) {
-                traverseCallGraph(method, new ArrayList<>());
+        int[] entryPoints = callGraph.keySet().stream()
+                .filter(this::isEntryPoint)
+                .mapToInt(graph::id)
+                .toArray();
+        if (rapidTypeAnalysis) {
+            BitSet virtualCalleeIds = new BitSet(graph.size());
+            for (String virtualCallee : virtualCallees) {
+                virtualCalleeIds.set(graph.id(virtualCallee));
             }
+            RapidTypeAnalysis analysis = RapidTypeAnalysis.compute(graph, entryPoints, hierarchyBuilder.build(), virtualCalleeIds,
+                    methodId -> createdTypes.getOrDefault(graph.name(methodId), Collections.emptyList()));
+            System.out.println("Rapid type analysis: " + analysis.getInstantiatedTypes().size() + " instantiated types after "
+                    + analysis.getRounds() + " rounds");
+            reachability = analysis.getReachability();
+        } else {
+            reachability = Reachability.compute(graph, entryPoints, dispatchTargets(graph));
+        }
+        for (int methodId = reachability.nextReachable(0); methodId >= 0; methodId = reachability.nextReachable(methodId + 1)) {
+            reachableMethods.add(graph.name(methodId));
         }
     }
 
+    // Implementations a virtual or interface call may dispatch to, resolved through the class hierarchy once per method
+    private IntFunction<int[]> dispatchTargets(CallGraph graph) {
+        ClassHierarchy classHierarchy = hierarchyBuilder.build();
+        int[][] targetIds = new int[graph.size()][];
+        int[] noTargets = new int[0];
+        return methodId -> {
+            if (targetIds[methodId] == null) {
+                targetIds[methodId] = !virtualCallees.contains(graph.name(methodId)) ? noTargets
+                        : Arrays.stream(classHierarchy.resolveVirtual(graph.name(methodId)))
+                                .mapToInt(graph::id)
+                                .filter(targetId -> targetId >= 0)
+                                .toArray();
+            }
+            return targetIds[methodId];
+        };
+    }
+
+    // Witness path from an entry point to the method, rebuilt from the recorded predecessors
+    private List<String> pathTo(String method) {
+        CallGraph graph = reachability.getGraph();
+        int[] path = reachability.witnessPath(graph.id(method));
+        if (path == null) {
+            return null;
+        }
+        List<String> methodPath = new ArrayList<>(path.length);
+        for (int methodId : path) {
+            methodPath.add(graph.name(methodId));
+        }
+        return methodPath;
+    }
+
     private boolean isEntryPoint(String method) {
         return method.endsWith("main([Ljava/lang/String;)V") ||
                 method.contains("<init>") || // Constructors
@@ -116,36 +179,6 @@ public class MethodReachabilityAnalyzer4 {
         return !methodName.startsWith("private") && !methodName.startsWith("protected");
     }
 
-    private void traverseCallGraph(String method, List<String> path) {
-        if (reachableMethods.contains(method)) {
-            return;
-        }
-        reachableMethods.add(method);
-        path.add(method);
-
-        if (!pathsToMethods.containsKey(method)) {
-            pathsToMethods.put(method, new ArrayList<>());
-        }
-        pathsToMethods.get(method).add(new ArrayList<>(path));
-
-        Set<String> calledMethods = callGraph.get(method);
-        if (calledMethods != null) {
-            for (String calledMethod : calledMethods) {
-                traverseCallGraph(calledMethod, path);
-                // Also traverse implementations if it's an interface method
-                String className = calledMethod.substring(0, calledMethod.indexOf('.'));
-                if (interfaceImplementations.containsKey(className)) {
-                    for (String implClass : interfaceImplementations.get(className)) {
-                        String implMethod = implClass + calledMethod.substring(calledMethod.indexOf('.'));
-                        traverseCallGraph(implMethod, path);
-                    }
-                }
-            }
-        }
-
-        path.remove(path.size() - 1);
-    }
-
     private void writeResultsToFile(String reachableFileName, String nonReachableFileName) throws IOException {
         try (FileWriter reachableWriter = new FileWriter(reachableFileName);
              FileWriter nonReachableWriter = new FileWriter(nonReachableFileName)) {
@@ -166,10 +199,9 @@ public class MethodReachabilityAnalyzer4 {
 
     private void printPathsToMethod(String targetMethod) {
         System.out.println("Paths to method " + targetMethod + ":");
-        if (pathsToMethods.containsKey(targetMethod)) {
-            for (List<String> path : pathsToMethods.get(targetMethod)) {
-                System.out.println(String.join(" -> ", path));
-            }
+        List<String> path = pathTo(targetMethod);
+        if (path != null) {
+            System.out.println(String.join(" -> ", path));
         } else {
             System.out.println("No paths found to the specified method.");
         }
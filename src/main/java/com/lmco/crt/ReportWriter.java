@@ -0,0 +1,325 @@
+package com.lmco.crt;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/*
+ * Writes a report on its own thread, so searching and output overlap. Text is collected into batches on the calling
+ * thread and handed over through a bounded queue; the writer thread encodes it into a large direct buffer and writes
+ * that to a FileChannel. The caller only waits when the queue is full, i.e. when the disk is far behind.
+ *
+ * Sections mark byte ranges the caller wants to know about, reported to a listener on the writer thread once
+ * written. When compressed, every section is a gzip member of its own and so is any text between sections; a
+ * concatenation of members is still one valid gzip file, which lets a later run copy a section's bytes as they are.
+ */
+public class ReportWriter implements Closeable {
+
+    private static final int BATCH_CHARS = 64 * 1024;
+    private static final int QUEUE_CAPACITY = 64;
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    public interface SectionListener {
+        void sectionWritten(long offset, long length);
+    }
+
+    private final FileChannel channel;
+    private final boolean compressed;
+    private final BlockingQueue<Batch> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Thread thread;
+    private StringBuilder text = new StringBuilder(BATCH_CHARS);
+    private volatile IOException failure;
+    private boolean closed;
+
+    // Owned by the writer thread
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+    private long bytesWritten;
+    private long sectionStart = -1;
+    private Deflater deflater;
+    private CRC32 crc;
+    private ByteBuffer encoded;
+    private byte[] deflated;
+    private long memberSize = -1;
+
+    public ReportWriter(File file, boolean compressed) throws IOException {
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        this.compressed = compressed;
+        if (compressed) {
+            deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+            crc = new CRC32();
+            encoded = ByteBuffer.allocate(BATCH_CHARS * 3);
+            deflated = new byte[BATCH_CHARS];
+        }
+        thread = new Thread(this::run, "report-writer-" + file.getName());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public void write(String value) throws IOException {
+        text.append(value);
+        if (text.length() >= BATCH_CHARS) {
+            flushText();
+        }
+    }
+
+    public void beginSection() throws IOException {
+        submit(new Batch(Batch.BEGIN_SECTION));
+    }
+
+    public void endSection(SectionListener listener) throws IOException {
+        Batch batch = new Batch(Batch.END_SECTION);
+        batch.listener = listener;
+        submit(batch);
+    }
+
+    // Copies length bytes of source, e.g. an unchanged section of the previous report, without decoding them
+    public void copy(FileChannel source, long position, long length) throws IOException {
+        Batch batch = new Batch(Batch.COPY);
+        batch.source = source;
+        batch.position = position;
+        batch.length = length;
+        submit(batch);
+    }
+
+    // Waits until everything submitted so far is written; the total is only known after close
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            submit(new Batch(Batch.CLOSE));
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while writing the report");
+        } finally {
+            channel.close();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    private void flushText() throws IOException {
+        if (text.length() > 0) {
+            Batch batch = new Batch(Batch.TEXT);
+            batch.text = text;
+            text = new StringBuilder(BATCH_CHARS);
+            put(batch);
+        }
+    }
+
+    private void submit(Batch batch) throws IOException {
+        flushText();
+        put(batch);
+    }
+
+    private void put(Batch batch) throws IOException {
+        if (failure != null) {
+            throw failure;
+        }
+        try {
+            queue.put(batch);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while writing the report");
+        }
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                Batch batch;
+                try {
+                    batch = queue.take();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                // After a failure batches are only taken off the queue, so the caller never blocks on it
+                if (failure == null) {
+                    try {
+                        process(batch);
+                    } catch (IOException e) {
+                        failure = e;
+                    }
+                }
+                if (batch.kind == Batch.CLOSE) {
+                    return;
+                }
+            }
+        } finally {
+            // Frees zlib's native memory now instead of at finalization
+            if (deflater != null) {
+                deflater.end();
+            }
+        }
+    }
+
+    private void process(Batch batch) throws IOException {
+        switch (batch.kind) {
+            case Batch.TEXT:
+                if (compressed) {
+                    deflate(batch.text);
+                } else {
+                    encode(CharBuffer.wrap(batch.text), buffer);
+                }
+                break;
+            case Batch.BEGIN_SECTION:
+                endMember();
+                sectionStart = position();
+                break;
+            case Batch.END_SECTION:
+                endMember();
+                if (batch.listener != null) {
+                    batch.listener.sectionWritten(sectionStart, position() - sectionStart);
+                }
+                sectionStart = -1;
+                break;
+            case Batch.COPY:
+                // transferTo returns 0 past the end of the source, so a shorter file would never finish copying
+                if (batch.position < 0 || batch.length < 0 || batch.position + batch.length > batch.source.size()) {
+                    throw new IOException("Cannot copy " + batch.length + " bytes at " + batch.position + " from a "
+                            + batch.source.size() + " byte file");
+                }
+                endMember();
+                drain();
+                for (long copied = 0; copied < batch.length; ) {
+                    long transferred = batch.source.transferTo(batch.position + copied, batch.length - copied, channel);
+                    if (transferred == 0) {
+                        throw new IOException("Source ended after " + copied + " of " + batch.length + " bytes");
+                    }
+                    copied += transferred;
+                }
+                bytesWritten += batch.length;
+                break;
+            case Batch.CLOSE:
+                endMember();
+                drain();
+                break;
+        }
+    }
+
+    private void encode(CharBuffer chars, ByteBuffer out) throws IOException {
+        while (true) {
+            CoderResult result = encoder.encode(chars, out, false);
+            if (result.isOverflow()) {
+                if (out == buffer) {
+                    drain();
+                } else {
+                    return;
+                }
+            } else if (result.isUnderflow()) {
+                return;
+            } else {
+                result.throwException();
+            }
+        }
+    }
+
+    // Text is encoded into a heap buffer, since Deflater takes arrays, and deflated into the current member
+    private void deflate(CharSequence chars) throws IOException {
+        if (memberSize < 0) {
+            put(new byte[]{(byte) 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff}, 10);
+            memberSize = 0;
+        }
+        CharBuffer input = CharBuffer.wrap(chars);
+        while (input.hasRemaining()) {
+            encoded.clear();
+            encode(input, encoded);
+            // Batches end between writes, so only a lone high surrogate is ever left over
+            if (encoded.position() == 0) {
+                break;
+            }
+            crc.update(encoded.array(), 0, encoded.position());
+            memberSize += encoded.position();
+            deflater.setInput(encoded.array(), 0, encoded.position());
+            while (!deflater.needsInput()) {
+                put(deflated, deflater.deflate(deflated));
+            }
+        }
+    }
+
+    private void endMember() throws IOException {
+        if (memberSize < 0) {
+            return;
+        }
+        deflater.finish();
+        while (!deflater.finished()) {
+            put(deflated, deflater.deflate(deflated));
+        }
+        long value = crc.getValue();
+        byte[] trailer = new byte[8];
+        for (int i = 0; i < 4; i++) {
+            trailer[i] = (byte) (value >>> (8 * i));
+            trailer[4 + i] = (byte) (memberSize >>> (8 * i));
+        }
+        put(trailer, 8);
+        deflater.reset();
+        crc.reset();
+        memberSize = -1;
+    }
+
+    private void put(byte[] bytes, int length) throws IOException {
+        for (int offset = 0; offset < length; ) {
+            if (!buffer.hasRemaining()) {
+                drain();
+            }
+            int count = Math.min(length - offset, buffer.remaining());
+            buffer.put(bytes, offset, count);
+            offset += count;
+        }
+    }
+
+    // File offset of the next byte, counting what is still buffered
+    private long position() {
+        return bytesWritten + buffer.position();
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            bytesWritten += channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static class Batch {
+
+        static final int TEXT = 0;
+        static final int BEGIN_SECTION = 1;
+        static final int END_SECTION = 2;
+        static final int COPY = 3;
+        static final int CLOSE = 4;
+
+        private final int kind;
+        private CharSequence text;
+        private SectionListener listener;
+        private FileChannel source;
+        private long position;
+        private long length;
+
+        Batch(int kind) {
+            this.kind = kind;
+        }
+    }
+}
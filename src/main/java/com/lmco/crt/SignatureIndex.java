@@ -0,0 +1,98 @@
+package com.lmco.crt;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/*
+ * Method signatures (owner.name(desc)) indexed by owner, then name, then descriptor, so a target resolves to its
+ * methods without scanning every method. Owners and names are sorted, which lets a trailing '*' match by prefix:
+ * com/acme/* covers every class under com/acme, and com/acme/Parser.read* every method whose name starts with read.
+ * Each signature is counted, so one added by several classes stays until the last of them removes it.
+ */
+public class SignatureIndex {
+
+    private final TreeMap<String, TreeMap<String, Map<String, Integer>>> methods = new TreeMap<>();
+    private int size;
+
+    public void add(String signature) {
+        int nameStart = nameStart(signature);
+        int descStart = signature.indexOf('(', nameStart);
+        Map<String, Integer> descs = methods
+                .computeIfAbsent(signature.substring(0, nameStart - 1), k -> new TreeMap<>())
+                .computeIfAbsent(signature.substring(nameStart, descStart), k -> new LinkedHashMap<>());
+        if (descs.merge(signature.substring(descStart), 1, Integer::sum) == 1) {
+            size++;
+        }
+    }
+
+    public void remove(String signature) {
+        int nameStart = nameStart(signature);
+        int descStart = signature.indexOf('(', nameStart);
+        String owner = signature.substring(0, nameStart - 1);
+        TreeMap<String, Map<String, Integer>> names = methods.get(owner);
+        if (names == null) {
+            return;
+        }
+        String name = signature.substring(nameStart, descStart);
+        Map<String, Integer> descs = names.get(name);
+        if (descs == null || !descs.containsKey(signature.substring(descStart))) {
+            return;
+        }
+        if (descs.computeIfPresent(signature.substring(descStart), (desc, count) -> count == 1 ? null : count - 1) == null) {
+            size--;
+            if (descs.isEmpty() && names.remove(name) != null && names.isEmpty()) {
+                methods.remove(owner);
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // Signatures of the methods a target names: owner alone, owner and name, or owner, name and descriptor.
+    // A null or empty name or desc matches any, and owner or name may end in '*'
+    public List<String> resolve(String owner, String name, String desc) {
+        List<String> resolved = new ArrayList<>();
+        for (Map.Entry<String, TreeMap<String, Map<String, Integer>>> ownerEntry : matching(methods, owner).entrySet()) {
+            for (Map.Entry<String, Map<String, Integer>> nameEntry : matching(ownerEntry.getValue(), name).entrySet()) {
+                String prefix = ownerEntry.getKey() + "." + nameEntry.getKey();
+                if (desc == null || desc.isEmpty()) {
+                    for (String methodDesc : nameEntry.getValue().keySet()) {
+                        resolved.add(prefix + methodDesc);
+                    }
+                } else if (nameEntry.getValue().containsKey(desc)) {
+                    resolved.add(prefix + desc);
+                }
+            }
+        }
+        return resolved;
+    }
+
+    // Signatures are owner.name(desc); owners use '/' and descriptors never contain '.', so the name follows the last
+    // '.' before the '('
+    private static int nameStart(String signature) {
+        return signature.lastIndexOf('.', signature.indexOf('(')) + 1;
+    }
+
+    private static <V> SortedMap<String, V> matching(TreeMap<String, V> map, String key) {
+        if (key == null || key.isEmpty() || key.equals("*")) {
+            return map;
+        }
+        if (key.endsWith("*")) {
+            String prefix = key.substring(0, key.length() - 1);
+            // Every key starting with the prefix sorts before the prefix followed by the highest char
+            return map.subMap(prefix, prefix + Character.MAX_VALUE);
+        }
+        V value = map.get(key);
+        TreeMap<String, V> single = new TreeMap<>();
+        if (value != null) {
+            single.put(key, value);
+        }
+        return single;
+    }
+}
@@ -0,0 +1,168 @@
+package com.lmco.crt.graph;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Map;
+
+/*
+ * Immutable call graph over interned method IDs. Forward (callees) and reverse (callers) edges are kept in
+ * compressed-sparse-row form: the neighbours of method i are stored in [offsets[i], offsets[i + 1]) of a single
+ * int[] so traversals never touch boxed collections or signature strings.
+ */
+public class CallGraph {
+
+    private final MethodTable methods;
+    private final BitSet declared;
+    private final int[] calleeOffsets;
+    private final int[] callees;
+    private final int[] callerOffsets;
+    private final int[] callers;
+    private final int[] callSites;
+
+    private CallGraph(MethodTable methods, BitSet declared, int[] calleeOffsets, int[] callees,
+                      int[] callerOffsets, int[] callers, int[] callSites) {
+        this.methods = methods;
+        this.declared = declared;
+        this.calleeOffsets = calleeOffsets;
+        this.callees = callees;
+        this.callerOffsets = callerOffsets;
+        this.callers = callers;
+        this.callSites = callSites;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static CallGraph from(Map<String, ? extends Collection<String>> callGraph) {
+        Builder builder = new Builder();
+        for (Map.Entry<String, ? extends Collection<String>> entry : callGraph.entrySet()) {
+            int caller = builder.declare(entry.getKey());
+            for (String calledMethod : entry.getValue()) {
+                builder.addCall(caller, builder.method(calledMethod));
+            }
+        }
+        return builder.build();
+    }
+
+    public int size() {
+        return methods.size();
+    }
+
+    public int id(String signature) {
+        return methods.id(signature);
+    }
+
+    public String name(int id) {
+        return methods.name(id);
+    }
+
+    // True when the method body was seen in the analyzed classes, false for methods that are only called
+    public boolean isDeclared(int id) {
+        return declared.get(id);
+    }
+
+    public int calleeStart(int id) {
+        return calleeOffsets[id];
+    }
+
+    public int calleeEnd(int id) {
+        return calleeOffsets[id + 1];
+    }
+
+    public int callee(int index) {
+        return callees[index];
+    }
+
+    public int callerStart(int id) {
+        return callerOffsets[id];
+    }
+
+    public int callerEnd(int id) {
+        return callerOffsets[id + 1];
+    }
+
+    public int caller(int index) {
+        return callers[index];
+    }
+
+    // Number of call sites behind the caller edge at the same index
+    public int callSites(int index) {
+        return callSites[index];
+    }
+
+    public int edgeCount() {
+        return callees.length;
+    }
+
+    public static class Builder {
+
+        private final MethodTable methods = new MethodTable();
+        private final BitSet declared = new BitSet();
+        // Each edge packed as (caller << 32 | callee), one entry per call site
+        private long[] edges = new long[1024];
+        private int edgeCount;
+
+        public int declare(String signature) {
+            int id = methods.intern(signature);
+            declared.set(id);
+            return id;
+        }
+
+        public int method(String signature) {
+            return methods.intern(signature);
+        }
+
+        public void addCall(int caller, int callee) {
+            if (edgeCount == edges.length) {
+                edges = Arrays.copyOf(edges, edgeCount * 2);
+            }
+            edges[edgeCount++] = ((long) caller << 32) | callee;
+        }
+
+        public CallGraph build() {
+            int methodCount = methods.size();
+            long[] sorted = Arrays.copyOf(edges, edgeCount);
+            Arrays.sort(sorted);
+
+            // Collapse repeated call sites into one edge with a count
+            int unique = 0;
+            int[] counts = new int[sorted.length];
+            for (int i = 0; i < sorted.length; i++) {
+                if (unique > 0 && sorted[unique - 1] == sorted[i]) {
+                    counts[unique - 1]++;
+                } else {
+                    sorted[unique] = sorted[i];
+                    counts[unique++] = 1;
+                }
+            }
+
+            int[] calleeOffsets = new int[methodCount + 1];
+            int[] callerOffsets = new int[methodCount + 1];
+            for (int i = 0; i < unique; i++) {
+                calleeOffsets[(int) (sorted[i] >>> 32) + 1]++;
+                callerOffsets[(int) sorted[i] + 1]++;
+            }
+            for (int i = 0; i < methodCount; i++) {
+                calleeOffsets[i + 1] += calleeOffsets[i];
+                callerOffsets[i + 1] += callerOffsets[i];
+            }
+
+            int[] callees = new int[unique];
+            int[] callers = new int[unique];
+            int[] callSites = new int[unique];
+            int[] callerFill = Arrays.copyOf(callerOffsets, methodCount);
+            for (int i = 0; i < unique; i++) {
+                int caller = (int) (sorted[i] >>> 32);
+                int callee = (int) sorted[i];
+                callees[i] = callee;
+                int slot = callerFill[callee]++;
+                callers[slot] = caller;
+                callSites[slot] = counts[i];
+            }
+            return new CallGraph(methods, (BitSet) declared.clone(), calleeOffsets, callees,
+                    callerOffsets, callers, callSites);
+        }
+    }
+}
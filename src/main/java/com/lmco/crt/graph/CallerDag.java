@@ -0,0 +1,223 @@
+package com.lmco.crt.graph;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.IntPredicate;
+
+/*
+ * The callers cone of one or more root methods, with every method in the cone stored once. A method reached through
+ * many different callees is expanded a single time and its caller list is shared by all of them, so the structure
+ * grows with the size of the cone rather than with the number of paths through it.
+ */
+public class CallerDag {
+
+    private final CallGraph graph;
+    private final int rootCount;
+    private final int[] methodIds;
+    private final int[] callerOffsets;
+    private final int[] callers;
+
+    private CallerDag(CallGraph graph, int rootCount, int[] methodIds, int[] callerOffsets, int[] callers) {
+        this.graph = graph;
+        this.rootCount = rootCount;
+        this.methodIds = methodIds;
+        this.callerOffsets = callerOffsets;
+        this.callers = callers;
+    }
+
+    // A DAG read back from a file, without the call graph it came from; methodIds are whatever the file numbered
+    public static CallerDag of(int rootCount, int[] methodIds, int[] callerOffsets, int[] callers) {
+        return new CallerDag(null, rootCount, methodIds, callerOffsets, callers);
+    }
+
+    // Roots are always expanded; any other method only has its callers added when expand accepts it
+    public static CallerDag build(CallGraph graph, int[] roots, IntPredicate expand) {
+        int[] nodeOf = new int[graph.size()];
+        Arrays.fill(nodeOf, -1);
+        int[] methodIds = new int[Math.max(16, roots.length)];
+        int nodeCount = 0;
+        for (int root : roots) {
+            if (nodeOf[root] == -1) {
+                nodeOf[root] = nodeCount;
+                methodIds[nodeCount++] = root;
+            }
+        }
+        int rootCount = nodeCount;
+
+        // Nodes are numbered in breadth-first order, so each node's callers are appended in node order
+        int[] callerOffsets = new int[17];
+        int[] callers = new int[16];
+        int edgeCount = 0;
+        for (int node = 0; node < nodeCount; node++) {
+            if (node + 1 >= callerOffsets.length) {
+                callerOffsets = Arrays.copyOf(callerOffsets, callerOffsets.length * 2);
+            }
+            callerOffsets[node] = edgeCount;
+            int methodId = methodIds[node];
+            if (node >= rootCount && !expand.test(methodId)) {
+                continue;
+            }
+            for (int i = graph.callerStart(methodId); i < graph.callerEnd(methodId); i++) {
+                int callerId = graph.caller(i);
+                if (nodeOf[callerId] == -1) {
+                    if (nodeCount == methodIds.length) {
+                        methodIds = Arrays.copyOf(methodIds, nodeCount * 2);
+                    }
+                    nodeOf[callerId] = nodeCount;
+                    methodIds[nodeCount++] = callerId;
+                }
+                if (edgeCount == callers.length) {
+                    callers = Arrays.copyOf(callers, edgeCount * 2);
+                }
+                callers[edgeCount++] = nodeOf[callerId];
+            }
+        }
+        callerOffsets = Arrays.copyOf(callerOffsets, nodeCount + 1);
+        callerOffsets[nodeCount] = edgeCount;
+        return new CallerDag(graph, rootCount, Arrays.copyOf(methodIds, nodeCount), callerOffsets,
+                Arrays.copyOf(callers, edgeCount));
+    }
+
+    public CallGraph getGraph() {
+        return graph;
+    }
+
+    // Nodes 0 to rootCount() - 1 are the roots, in the order they were given
+    public int rootCount() {
+        return rootCount;
+    }
+
+    public int size() {
+        return methodIds.length;
+    }
+
+    public int methodId(int node) {
+        return methodIds[node];
+    }
+
+    public int callerStart(int node) {
+        return callerOffsets[node];
+    }
+
+    public int callerEnd(int node) {
+        return callerOffsets[node + 1];
+    }
+
+    public int caller(int index) {
+        return callers[index];
+    }
+
+    // Streams every path from the given node to a method without callers in the cone, and returns how many there were
+    public long forEachPath(int node, PathConsumer consumer) throws IOException {
+        return forEachPath(node, Integer.MAX_VALUE, Long.MAX_VALUE, consumer);
+    }
+
+    public long forEachPath(int node, int maxDepth, long maxPaths, PathConsumer consumer) throws IOException {
+        return forEachPath(node, callerNode -> true, maxDepth, maxPaths, consumer);
+    }
+
+    /*
+     * Depth-first path enumeration on an explicit stack. A caller that is already on the current path closes a cycle
+     * and is skipped, so a path ends when every caller is either absent or already on it, or when expand rejects the
+     * node it ends at. Paths reaching maxDepth methods are reported as they are, and the search stops once maxPaths
+     * paths have been reported. Stats record whether either limit actually left something out: a path cut short of a
+     * caller, or one more path after the last reported.
+     */
+    public long forEachPath(int node, IntPredicate expand, int maxDepth, long maxPaths, PathConsumer consumer)
+            throws IOException {
+        return forEachPath(node, expand, maxDepth, maxPaths, consumer, null);
+    }
+
+    // As above, adding the nodes expanded, the peak stack depth and the paths to stats unless it is null
+    public long forEachPath(int node, IntPredicate expand, int maxDepth, long maxPaths, PathConsumer consumer,
+                            SearchStats stats) throws IOException {
+        BitSet onPath = new BitSet(size());
+        int[] nodes = new int[32];
+        int[] cursors = new int[32];
+        int[] path = new int[32];
+        BitSet extended = new BitSet();
+        int depth = 0;
+        long pathCount = 0;
+        long nodesExpanded = 1;
+        int peakDepth = 1;
+        boolean pathLimitReached = false;
+        boolean depthLimitReached = false;
+
+        nodes[0] = node;
+        cursors[0] = expand.test(node) ? callerOffsets[node] : callerOffsets[node + 1];
+        path[0] = methodIds[node];
+        onPath.set(node);
+        depth++;
+
+        while (depth > 0) {
+            int top = depth - 1;
+            int current = nodes[top];
+            if (depth < maxDepth && cursors[top] < callerOffsets[current + 1]) {
+                int caller = callers[cursors[top]++];
+                if (onPath.get(caller)) {
+                    continue;
+                }
+                extended.set(top);
+                if (depth == nodes.length) {
+                    nodes = Arrays.copyOf(nodes, depth * 2);
+                    cursors = Arrays.copyOf(cursors, depth * 2);
+                    path = Arrays.copyOf(path, depth * 2);
+                }
+                nodes[depth] = caller;
+                cursors[depth] = expand.test(caller) ? callerOffsets[caller] : callerOffsets[caller + 1];
+                path[depth] = methodIds[caller];
+                extended.clear(depth);
+                onPath.set(caller);
+                depth++;
+                nodesExpanded++;
+                peakDepth = Math.max(peakDepth, depth);
+                continue;
+            }
+            if (!extended.get(top)) {
+                if (pathCount == maxPaths) {
+                    pathLimitReached = true;
+                    break;
+                }
+                consumer.accept(path, depth);
+                pathCount++;
+                if (depth >= maxDepth && hasCallerOffPath(cursors[top], callerOffsets[current + 1], onPath)) {
+                    depthLimitReached = true;
+                }
+            }
+            onPath.clear(current);
+            depth--;
+        }
+        if (stats != null) {
+            stats.record(nodesExpanded, peakDepth, pathCount, pathLimitReached, depthLimitReached);
+        }
+        return pathCount;
+    }
+
+    /*
+     * Paths from each of the root nodes in turn, sharing maxPaths. The roots after the limit are still asked for one
+     * path, so stats record whether the limit left one out. With callerRequired a root without callers is skipped,
+     * as its only path is the root alone.
+     */
+    public long forEachPath(int[] rootNodes, IntPredicate expand, boolean callerRequired, int maxDepth, long maxPaths,
+                            PathConsumer consumer, SearchStats stats) throws IOException {
+        SearchStats limits = stats != null ? stats : new SearchStats();
+        long pathCount = 0;
+        for (int root = 0; root < rootNodes.length && !limits.isPathLimitReached(); root++) {
+            if (callerRequired && callerStart(rootNodes[root]) == callerEnd(rootNodes[root])) {
+                continue;
+            }
+            pathCount += forEachPath(rootNodes[root], expand, maxDepth, maxPaths - pathCount, consumer, limits);
+        }
+        return pathCount;
+    }
+
+    private boolean hasCallerOffPath(int from, int to, BitSet onPath) {
+        for (int i = from; i < to; i++) {
+            if (!onPath.get(callers[i])) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,238 @@
+package com.lmco.crt.graph;
+
+import com.lmco.crt.ingest.ClassFacts;
+import org.objectweb.asm.Opcodes;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+ * Supertypes and subtypes of every class in the jar, through both superclasses and interfaces. The transitive sets
+ * are computed once per type, and the targets of a virtual or interface call are resolved once per called method
+ * and cached, so traversals look them up instead of walking the hierarchy for every edge.
+ */
+public class ClassHierarchy {
+
+    private static final String[] NO_TARGETS = new String[0];
+
+    private final Map<String, TypeInfo> types;
+    private final Map<String, List<String>> directSubtypes;
+    private final Map<String, Set<String>> supertypes = new ConcurrentHashMap<>();
+    private final Map<String, Set<String>> subtypes = new ConcurrentHashMap<>();
+    private final Map<String, Boolean> abstractAncestors = new ConcurrentHashMap<>();
+    private final Map<String, String[]> dispatchTargets = new ConcurrentHashMap<>();
+
+    private ClassHierarchy(Map<String, TypeInfo> types) {
+        this.types = types;
+        this.directSubtypes = new HashMap<>();
+        for (TypeInfo type : types.values()) {
+            if (type.superName != null) {
+                directSubtypes.computeIfAbsent(type.superName, k -> new ArrayList<>()).add(type.name);
+            }
+            for (String interfaceName : type.interfaces) {
+                directSubtypes.computeIfAbsent(interfaceName, k -> new ArrayList<>()).add(type.name);
+            }
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static ClassHierarchy of(Collection<ClassFacts> classes) {
+        Builder builder = builder();
+        for (ClassFacts classFacts : classes) {
+            builder.add(classFacts);
+        }
+        return builder.build();
+    }
+
+    public boolean contains(String className) {
+        return types.containsKey(className);
+    }
+
+    // Every class and interface the given type extends or implements, directly or not
+    public Set<String> supertypes(String className) {
+        Set<String> result = supertypes.get(className);
+        if (result == null) {
+            result = new LinkedHashSet<>();
+            Deque<String> pending = new ArrayDeque<>();
+            pending.add(className);
+            while (!pending.isEmpty()) {
+                TypeInfo type = types.get(pending.poll());
+                if (type == null) {
+                    continue;
+                }
+                if (type.superName != null && result.add(type.superName)) {
+                    pending.add(type.superName);
+                }
+                for (String interfaceName : type.interfaces) {
+                    if (result.add(interfaceName)) {
+                        pending.add(interfaceName);
+                    }
+                }
+            }
+            result = Collections.unmodifiableSet(result);
+            supertypes.put(className, result);
+        }
+        return result;
+    }
+
+    // Every class and interface in the jar that extends or implements the given type, directly or not
+    public Set<String> subtypes(String className) {
+        Set<String> result = subtypes.get(className);
+        if (result == null) {
+            result = new LinkedHashSet<>();
+            Deque<String> pending = new ArrayDeque<>();
+            pending.add(className);
+            while (!pending.isEmpty()) {
+                for (String subtype : directSubtypes.getOrDefault(pending.poll(), Collections.emptyList())) {
+                    if (result.add(subtype)) {
+                        pending.add(subtype);
+                    }
+                }
+            }
+            result = Collections.unmodifiableSet(result);
+            subtypes.put(className, result);
+        }
+        return result;
+    }
+
+    public boolean isSubtypeOf(String className, String ancestor) {
+        return className.equals(ancestor) || supertypes(className).contains(ancestor);
+    }
+
+    // Whether the class or one of its superclasses is abstract
+    public boolean hasAbstractAncestor(String className) {
+        Boolean result = abstractAncestors.get(className);
+        if (result == null) {
+            TypeInfo type = types.get(className);
+            result = type != null && (type.isAbstract() || (type.superName != null && hasAbstractAncestor(type.superName)));
+            abstractAncestors.put(className, result);
+        }
+        return result;
+    }
+
+    /*
+     * Methods a virtual or interface call to the given signature (owner.name(desc)) may dispatch to: the
+     * implementation every concrete class among the owner and its subtypes would run, found through its superclasses
+     * and then its default interface methods.
+     */
+    public String[] resolveVirtual(String methodSignature) {
+        String[] result = dispatchTargets.get(methodSignature);
+        if (result == null) {
+            int separator = methodSignature.indexOf('.');
+            String owner = methodSignature.substring(0, separator);
+            String method = methodSignature.substring(separator + 1);
+            Set<String> targets = new LinkedHashSet<>();
+            addImplementation(targets, owner, method);
+            for (String subtype : subtypes(owner)) {
+                addImplementation(targets, subtype, method);
+            }
+            result = targets.isEmpty() ? NO_TARGETS : targets.toArray(NO_TARGETS);
+            dispatchTargets.put(methodSignature, result);
+        }
+        return result;
+    }
+
+    // As resolveVirtual, but only for receivers of the given types, as in Rapid Type Analysis; not cached
+    public String[] resolveVirtual(String methodSignature, Set<String> instantiatedTypes) {
+        int separator = methodSignature.indexOf('.');
+        String owner = methodSignature.substring(0, separator);
+        String method = methodSignature.substring(separator + 1);
+        Set<String> targets = new LinkedHashSet<>();
+        Set<String> ownerSubtypes = subtypes(owner);
+        if (instantiatedTypes.size() < ownerSubtypes.size()) {
+            for (String type : instantiatedTypes) {
+                if (type.equals(owner) || ownerSubtypes.contains(type)) {
+                    addImplementation(targets, type, method);
+                }
+            }
+        } else {
+            if (instantiatedTypes.contains(owner)) {
+                addImplementation(targets, owner, method);
+            }
+            for (String subtype : ownerSubtypes) {
+                if (instantiatedTypes.contains(subtype)) {
+                    addImplementation(targets, subtype, method);
+                }
+            }
+        }
+        return targets.isEmpty() ? NO_TARGETS : targets.toArray(NO_TARGETS);
+    }
+
+    private void addImplementation(Set<String> targets, String className, String method) {
+        TypeInfo type = types.get(className);
+        if (type == null || type.isInterface() || type.isAbstract()) {
+            return;
+        }
+        for (TypeInfo declaring = type; declaring != null; declaring = types.get(declaring.superName)) {
+            Integer access = declaring.methods.get(method);
+            if (access != null && (access & Opcodes.ACC_ABSTRACT) == 0) {
+                targets.add(declaring.name + "." + method);
+                return;
+            }
+        }
+        for (String supertype : supertypes(className)) {
+            TypeInfo declaring = types.get(supertype);
+            if (declaring != null && declaring.isInterface()) {
+                Integer access = declaring.methods.get(method);
+                if (access != null && (access & Opcodes.ACC_ABSTRACT) == 0) {
+                    targets.add(declaring.name + "." + method);
+                    return;
+                }
+            }
+        }
+    }
+
+    private static class TypeInfo {
+
+        private final String name;
+        private final int access;
+        private final String superName;
+        private final List<String> interfaces;
+        // name(desc) of each declared method to its access flags
+        private final Map<String, Integer> methods = new HashMap<>();
+
+        TypeInfo(String name, int access, String superName, List<String> interfaces) {
+            this.name = name;
+            this.access = access;
+            this.superName = superName;
+            this.interfaces = interfaces;
+        }
+
+        boolean isInterface() {
+            return (access & Opcodes.ACC_INTERFACE) != 0;
+        }
+
+        boolean isAbstract() {
+            return (access & Opcodes.ACC_ABSTRACT) != 0;
+        }
+    }
+
+    public static class Builder {
+
+        private final Map<String, TypeInfo> types = new HashMap<>();
+
+        public void addClass(String name, int access, String superName, List<String> interfaces) {
+            types.put(name, new TypeInfo(name, access, superName,
+                    interfaces != null ? interfaces : Collections.emptyList()));
+        }
+
+        // The owner has to be added with addClass first
+        public void addMethod(String owner, String name, String desc, int access) {
+            types.get(owner).methods.put(name + desc, access);
+        }
+
+        public void add(ClassFacts classFacts) {
+            addClass(classFacts.getName(), classFacts.getAccess(), classFacts.getSuperName(), classFacts.getInterfaces());
+            for (ClassFacts.MethodFacts method : classFacts.getMethods()) {
+                addMethod(classFacts.getName(), method.getName(), method.getDesc(), method.getAccess());
+            }
+        }
+
+        public ClassHierarchy build() {
+            return new ClassHierarchy(new HashMap<>(types));
+        }
+    }
+}
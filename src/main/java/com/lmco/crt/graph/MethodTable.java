@@ -0,0 +1,40 @@
+package com.lmco.crt.graph;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// Interns method signatures ("owner.name+desc") to dense int IDs starting at 0
+public class MethodTable {
+
+    private final Map<String, Integer> ids = new HashMap<>();
+    private String[] names = new String[1024];
+    private int size;
+
+    public int intern(String signature) {
+        Integer id = ids.get(signature);
+        if (id != null) {
+            return id;
+        }
+        if (size == names.length) {
+            names = Arrays.copyOf(names, size * 2);
+        }
+        names[size] = signature;
+        ids.put(signature, size);
+        return size++;
+    }
+
+    // Returns -1 when the signature was never interned
+    public int id(String signature) {
+        Integer id = ids.get(signature);
+        return id != null ? id : -1;
+    }
+
+    public String name(int id) {
+        return names[id];
+    }
+
+    public int size() {
+        return size;
+    }
+}
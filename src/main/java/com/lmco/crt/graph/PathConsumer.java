@@ -0,0 +1,11 @@
+package com.lmco.crt.graph;
+
+import java.io.IOException;
+
+/*
+ * Receives each path as soon as it is found. path[0] is where the search started and path[length - 1] the outermost
+ * caller. The array is reused for the next path, so copy the range to keep it.
+ */
+public interface PathConsumer {
+    void accept(int[] path, int length) throws IOException;
+}
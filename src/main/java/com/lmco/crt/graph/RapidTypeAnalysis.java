@@ -0,0 +1,69 @@
+package com.lmco.crt.graph;
+
+import java.util.*;
+import java.util.function.IntFunction;
+
+/*
+ * Forward reachability where a virtual or interface call only dispatches to classes that some reachable method
+ * instantiates. Each round traverses the graph with the types known so far and collects the types created by the
+ * methods it reached; rounds repeat until no new type shows up. Types only created outside the analyzed code, or
+ * through reflection, are never seen, so their implementations are only reached through direct calls.
+ */
+public class RapidTypeAnalysis {
+
+    private static final int[] NO_TARGETS = new int[0];
+
+    private final Reachability reachability;
+    private final Set<String> instantiatedTypes;
+    private final int rounds;
+
+    private RapidTypeAnalysis(Reachability reachability, Set<String> instantiatedTypes, int rounds) {
+        this.reachability = reachability;
+        this.instantiatedTypes = instantiatedTypes;
+        this.rounds = rounds;
+    }
+
+    /*
+     * virtualCallees marks the methods called through invokevirtual or invokeinterface, and createdTypes gives the
+     * classes a method creates with NEW.
+     */
+    public static RapidTypeAnalysis compute(CallGraph graph, int[] entryPoints, ClassHierarchy hierarchy,
+                                            BitSet virtualCallees, IntFunction<List<String>> createdTypes) {
+        Set<String> instantiatedTypes = new HashSet<>();
+        int rounds = 0;
+        while (true) {
+            rounds++;
+            Set<String> knownTypes = new HashSet<>(instantiatedTypes);
+            int[][] targetIds = new int[graph.size()][];
+            Reachability reachability = Reachability.compute(graph, entryPoints, methodId -> {
+                if (targetIds[methodId] == null) {
+                    targetIds[methodId] = !virtualCallees.get(methodId) ? NO_TARGETS
+                            : Arrays.stream(hierarchy.resolveVirtual(graph.name(methodId), knownTypes))
+                                    .mapToInt(graph::id)
+                                    .filter(targetId -> targetId >= 0)
+                                    .toArray();
+                }
+                return targetIds[methodId];
+            });
+
+            for (int methodId = reachability.nextReachable(0); methodId >= 0; methodId = reachability.nextReachable(methodId + 1)) {
+                instantiatedTypes.addAll(createdTypes.apply(methodId));
+            }
+            if (instantiatedTypes.size() == knownTypes.size()) {
+                return new RapidTypeAnalysis(reachability, Collections.unmodifiableSet(instantiatedTypes), rounds);
+            }
+        }
+    }
+
+    public Reachability getReachability() {
+        return reachability;
+    }
+
+    public Set<String> getInstantiatedTypes() {
+        return instantiatedTypes;
+    }
+
+    public int getRounds() {
+        return rounds;
+    }
+}
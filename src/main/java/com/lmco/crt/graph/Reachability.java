@@ -0,0 +1,124 @@
+package com.lmco.crt.graph;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.IntFunction;
+
+/*
+ * Forward reachability from a set of entry points. Methods are visited from an explicit worklist, marked in a bitset
+ * over method IDs and remember the single method they were first reached from, so the whole result takes two words
+ * per method however long the call chains are. A witness path to any reached method is rebuilt from the
+ * predecessors when it is asked for.
+ */
+public class Reachability {
+
+    private static final int[] NO_TARGETS = new int[0];
+
+    private final CallGraph graph;
+    private final BitSet reached;
+    private final int[] predecessors;
+
+    private Reachability(CallGraph graph, BitSet reached, int[] predecessors) {
+        this.graph = graph;
+        this.reached = reached;
+        this.predecessors = predecessors;
+    }
+
+    public static Reachability compute(CallGraph graph, int[] entryPoints) {
+        return compute(graph, entryPoints, callee -> NO_TARGETS);
+    }
+
+    /*
+     * virtualTargets returns the methods a call to the given callee may also dispatch to, for example the
+     * implementations of an interface method. They are reached from the caller just like the callee itself.
+     */
+    public static Reachability compute(CallGraph graph, int[] entryPoints, IntFunction<int[]> virtualTargets) {
+        Worklist worklist = new Worklist(graph.size());
+        for (int entryPoint : entryPoints) {
+            worklist.reach(entryPoint, -1);
+            while (!worklist.isEmpty()) {
+                int method = worklist.next();
+                for (int i = graph.calleeStart(method); i < graph.calleeEnd(method); i++) {
+                    int callee = graph.callee(i);
+                    worklist.reach(callee, method);
+                    for (int target : virtualTargets.apply(callee)) {
+                        worklist.reach(target, method);
+                    }
+                }
+            }
+        }
+        return new Reachability(graph, worklist.reached, worklist.predecessors);
+    }
+
+    public CallGraph getGraph() {
+        return graph;
+    }
+
+    public boolean isReachable(int methodId) {
+        return methodId >= 0 && reached.get(methodId);
+    }
+
+    public int reachableCount() {
+        return reached.cardinality();
+    }
+
+    // Next reachable method ID at or after fromId, or -1 when there is none
+    public int nextReachable(int fromId) {
+        return reached.nextSetBit(fromId);
+    }
+
+    // Method the given one was first reached from, or -1 for entry points and unreachable methods
+    public int predecessor(int methodId) {
+        return predecessors[methodId];
+    }
+
+    // Method IDs from an entry point to the given method, or null if it is not reachable
+    public int[] witnessPath(int methodId) {
+        if (!isReachable(methodId)) {
+            return null;
+        }
+        int length = 1;
+        for (int method = predecessors[methodId]; method >= 0; method = predecessors[method]) {
+            length++;
+        }
+        int[] path = new int[length];
+        for (int method = methodId, i = length - 1; method >= 0; method = predecessors[method], i--) {
+            path[i] = method;
+        }
+        return path;
+    }
+
+    private static class Worklist {
+
+        private final BitSet reached;
+        private final int[] predecessors;
+        private int[] pending = new int[64];
+        private int size;
+
+        Worklist(int methodCount) {
+            reached = new BitSet(methodCount);
+            predecessors = new int[methodCount];
+            Arrays.fill(predecessors, -1);
+        }
+
+        void reach(int method, int from) {
+            if (reached.get(method)) {
+                return;
+            }
+            reached.set(method);
+            predecessors[method] = from;
+            if (size == pending.length) {
+                pending = Arrays.copyOf(pending, size * 2);
+            }
+            pending[size++] = method;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        int next() {
+            return pending[--size];
+        }
+    }
+}
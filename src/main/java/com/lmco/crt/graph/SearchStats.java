@@ -0,0 +1,45 @@
+package com.lmco.crt.graph;
+
+/*
+ * Work done by path searches: nodes pushed onto the search stack, the deepest the stack got and the paths reported,
+ * and whether a limit left paths out. One instance can be passed to several searches, e.g. for all roots of one
+ * target, and then holds their total.
+ */
+public class SearchStats {
+
+    private long nodesExpanded;
+    private int peakFrontier;
+    private long paths;
+    private boolean pathLimitReached;
+    private boolean depthLimitReached;
+
+    void record(long nodesExpanded, int peakFrontier, long paths, boolean pathLimitReached, boolean depthLimitReached) {
+        this.nodesExpanded += nodesExpanded;
+        this.peakFrontier = Math.max(this.peakFrontier, peakFrontier);
+        this.paths += paths;
+        this.pathLimitReached |= pathLimitReached;
+        this.depthLimitReached |= depthLimitReached;
+    }
+
+    public long getNodesExpanded() {
+        return nodesExpanded;
+    }
+
+    public int getPeakFrontier() {
+        return peakFrontier;
+    }
+
+    public long getPaths() {
+        return paths;
+    }
+
+    // A further path existed after maxPaths had been reported
+    public boolean isPathLimitReached() {
+        return pathLimitReached;
+    }
+
+    // A reported path was cut at maxDepth although its last method has callers
+    public boolean isDepthLimitReached() {
+        return depthLimitReached;
+    }
+}
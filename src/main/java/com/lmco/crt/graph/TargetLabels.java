@@ -0,0 +1,212 @@
+package com.lmco.crt.graph;
+
+import com.lmco.crt.jfr.CallerSearchEvent;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.function.IntPredicate;
+
+/*
+ * Backward reachability for many targets in one pass. All targets share a single caller DAG, and every node carries
+ * a bitset of the targets whose callers cone it belongs to. Labels are pushed from callee to caller until nothing
+ * changes, so the reverse graph is walked once however many targets there are. Paths for one target then only
+ * follow nodes that carry its label.
+ */
+public class TargetLabels {
+
+    private final CallerDag dag;
+    private final IntPredicate expand;
+    private final int targetCount;
+    private final int words;
+    private final int[][] targetRootNodes;
+    // Targets each root node was given for, and the targets each node reaches, words longs per node
+    private final long[] rootLabels;
+    private final long[] labels;
+
+    private TargetLabels(CallerDag dag, IntPredicate expand, int[][] targetRootNodes, long[] rootLabels, long[] labels) {
+        this.dag = dag;
+        this.expand = expand;
+        this.targetCount = targetRootNodes.length;
+        this.words = wordCount(targetCount);
+        this.targetRootNodes = targetRootNodes;
+        this.rootLabels = rootLabels;
+        this.labels = labels;
+    }
+
+    /*
+     * targetRoots[t] holds the methods target t starts from. As with CallerDag, a target's own roots are always
+     * expanded and any other method only passes labels on to its callers when expand accepts it.
+     */
+    public static TargetLabels build(CallGraph graph, int[][] targetRoots, IntPredicate expand) {
+        CallerSearchEvent event = new CallerSearchEvent();
+        event.begin();
+        int rootMethodCount = 0;
+        for (int[] roots : targetRoots) {
+            rootMethodCount += roots.length;
+        }
+        int[] allRoots = new int[rootMethodCount];
+        int next = 0;
+        for (int[] roots : targetRoots) {
+            System.arraycopy(roots, 0, allRoots, next, roots.length);
+            next += roots.length;
+        }
+        CallerDag dag = CallerDag.build(graph, allRoots, expand);
+
+        int targetCount = targetRoots.length;
+        int words = wordCount(targetCount);
+        int[] rootNode = new int[graph.size()];
+        for (int node = 0; node < dag.rootCount(); node++) {
+            rootNode[dag.methodId(node)] = node;
+        }
+        long[] rootLabels = new long[dag.rootCount() * words];
+        int[][] targetRootNodes = new int[targetCount][];
+        for (int target = 0; target < targetCount; target++) {
+            int[] rootNodes = new int[targetRoots[target].length];
+            int count = 0;
+            for (int root : targetRoots[target]) {
+                int index = rootNode[root] * words + (target >>> 6);
+                if ((rootLabels[index] & (1L << target)) == 0) {
+                    rootLabels[index] |= 1L << target;
+                    rootNodes[count++] = rootNode[root];
+                }
+            }
+            targetRootNodes[target] = Arrays.copyOf(rootNodes, count);
+        }
+
+        long[] labels = new long[dag.size() * words];
+        System.arraycopy(rootLabels, 0, labels, 0, rootLabels.length);
+        TargetLabels targetLabels = new TargetLabels(dag, expand, targetRootNodes, rootLabels, labels);
+        targetLabels.propagate();
+        event.end();
+        if (event.shouldCommit()) {
+            event.targets = targetCount;
+            event.nodes = dag.size();
+            event.edges = dag.size() > 0 ? dag.callerEnd(dag.size() - 1) : 0;
+            event.commit();
+        }
+        return targetLabels;
+    }
+
+    private static int wordCount(int targetCount) {
+        return Math.max(1, (targetCount + 63) >>> 6);
+    }
+
+    // Worklist fixpoint: a node is queued again whenever one of its callees hands it a label it did not have yet
+    private void propagate() {
+        int[] queue = new int[Math.max(16, dag.rootCount())];
+        BitSet queued = new BitSet(dag.size());
+        int head = 0;
+        int queueSize = 0;
+        for (int node = 0; node < dag.rootCount(); node++) {
+            queue[queueSize++] = node;
+            queued.set(node);
+        }
+        long[] passed = new long[words];
+        while (queueSize > 0) {
+            int node = queue[head];
+            head = (head + 1) % queue.length;
+            queueSize--;
+            queued.clear(node);
+
+            // An unexpanded root only passes on its own targets, other unexpanded nodes have no callers in the DAG
+            if (expand.test(dag.methodId(node))) {
+                System.arraycopy(labels, node * words, passed, 0, words);
+            } else if (node < dag.rootCount()) {
+                System.arraycopy(rootLabels, node * words, passed, 0, words);
+            } else {
+                continue;
+            }
+            for (int i = dag.callerStart(node); i < dag.callerEnd(node); i++) {
+                int caller = dag.caller(i);
+                boolean changed = false;
+                for (int word = 0; word < words; word++) {
+                    long before = labels[caller * words + word];
+                    long after = before | passed[word];
+                    if (after != before) {
+                        labels[caller * words + word] = after;
+                        changed = true;
+                    }
+                }
+                if (changed && !queued.get(caller)) {
+                    if (queueSize == queue.length) {
+                        int[] grown = new int[queue.length * 2];
+                        for (int j = 0; j < queueSize; j++) {
+                            grown[j] = queue[(head + j) % queue.length];
+                        }
+                        queue = grown;
+                        head = 0;
+                    }
+                    queue[(head + queueSize) % queue.length] = caller;
+                    queueSize++;
+                    queued.set(caller);
+                }
+            }
+        }
+    }
+
+    public CallerDag getDag() {
+        return dag;
+    }
+
+    public int targetCount() {
+        return targetCount;
+    }
+
+    public boolean reaches(int node, int target) {
+        return (labels[node * words + (target >>> 6)] & (1L << target)) != 0;
+    }
+
+    public boolean isRoot(int node, int target) {
+        return node < dag.rootCount() && (rootLabels[node * words + (target >>> 6)] & (1L << target)) != 0;
+    }
+
+    // Next target at or after fromTarget that the node reaches, or -1 when there is none
+    public int nextTarget(int node, int fromTarget) {
+        if (fromTarget >= targetCount) {
+            return -1;
+        }
+        int word = fromTarget >>> 6;
+        long bits = labels[node * words + word] & (-1L << fromTarget);
+        while (true) {
+            if (bits != 0) {
+                int target = (word << 6) + Long.numberOfTrailingZeros(bits);
+                return target < targetCount ? target : -1;
+            }
+            if (++word == words) {
+                return -1;
+            }
+            bits = labels[node * words + word];
+        }
+    }
+
+    // Paths of one target from one of its root nodes, passing through a node's callers only where the target would
+    public long forEachPath(int target, int rootNode, int maxDepth, long maxPaths, PathConsumer consumer)
+            throws IOException {
+        return forEachPath(target, rootNode, maxDepth, maxPaths, consumer, null);
+    }
+
+    public long forEachPath(int target, int rootNode, int maxDepth, long maxPaths, PathConsumer consumer,
+                            SearchStats stats) throws IOException {
+        return dag.forEachPath(rootNode, node -> isRoot(node, target)
+                || (reaches(node, target) && expand.test(dag.methodId(node))), maxDepth, maxPaths, consumer, stats);
+    }
+
+    // Paths of the target from all of its roots, sharing maxPaths as CallerDag does
+    public long forEachPath(int target, boolean callerRequired, int maxDepth, long maxPaths, PathConsumer consumer,
+                            SearchStats stats) throws IOException {
+        return dag.forEachPath(targetRootNodes[target], node -> isRoot(node, target)
+                || (reaches(node, target) && expand.test(dag.methodId(node))), callerRequired, maxDepth, maxPaths,
+                consumer, stats);
+    }
+
+    // Whether paths continue to the node's callers when it is not the target's own root
+    public boolean isExpanded(int node) {
+        return expand.test(dag.methodId(node));
+    }
+
+    // DAG nodes of the target's roots, in the order they were given
+    public int[] rootNodes(int target) {
+        return targetRootNodes[target];
+    }
+}
@@ -0,0 +1,132 @@
+package com.lmco.crt.ingest;
+
+import org.objectweb.asm.Opcodes;
+
+import java.util.List;
+
+// The parts of a class file the analyzers need: hierarchy, declared methods and the calls each method makes
+public class ClassFacts {
+
+    private final String name;
+    private final int access;
+    private final String superName;
+    private final List<String> interfaces;
+    private final List<MethodFacts> methods;
+
+    public ClassFacts(String name, int access, String superName, List<String> interfaces, List<MethodFacts> methods) {
+        this.name = name;
+        this.access = access;
+        this.superName = superName;
+        this.interfaces = interfaces;
+        this.methods = methods;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getAccess() {
+        return access;
+    }
+
+    public String getSuperName() {
+        return superName;
+    }
+
+    public List<String> getInterfaces() {
+        return interfaces;
+    }
+
+    public List<MethodFacts> getMethods() {
+        return methods;
+    }
+
+    public boolean isInterface() {
+        return (access & Opcodes.ACC_INTERFACE) != 0;
+    }
+
+    public boolean isAbstract() {
+        return (access & Opcodes.ACC_ABSTRACT) != 0;
+    }
+
+    public static class MethodFacts {
+
+        private final String signature;
+        private final String name;
+        private final String desc;
+        private final int access;
+        private final List<CallSite> calls;
+        private final List<String> instantiatedTypes;
+
+        public MethodFacts(String owner, String name, String desc, int access, List<CallSite> calls,
+                           List<String> instantiatedTypes) {
+            this.signature = owner + "." + name + desc;
+            this.name = name;
+            this.desc = desc;
+            this.access = access;
+            this.calls = calls;
+            this.instantiatedTypes = instantiatedTypes;
+        }
+
+        // "owner.name+desc", the key used for methods throughout the analyzers
+        public String getSignature() {
+            return signature;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getDesc() {
+            return desc;
+        }
+
+        public int getAccess() {
+            return access;
+        }
+
+        public List<CallSite> getCalls() {
+            return calls;
+        }
+
+        // Classes this method creates with a NEW instruction
+        public List<String> getInstantiatedTypes() {
+            return instantiatedTypes;
+        }
+    }
+
+    public static class CallSite {
+
+        private final int opcode;
+        private final String owner;
+        private final String name;
+        private final String desc;
+
+        public CallSite(int opcode, String owner, String name, String desc) {
+            this.opcode = opcode;
+            this.owner = owner;
+            this.name = name;
+            this.desc = desc;
+        }
+
+        public String getSignature() {
+            return owner + "." + name + desc;
+        }
+
+        public int getOpcode() {
+            return opcode;
+        }
+
+        public String getOwner() {
+            return owner;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getDesc() {
+            return desc;
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.lmco.crt.ingest;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/*
+ * On-disk store of ClassFacts keyed by jar entry name, CRC-32 and size. The CRC comes from the jar's central
+ * directory, so a cached class is recognised without inflating it. Only the entries used by the last run are written
+ * back, which keeps the file in step with the jar it was built from.
+ */
+public class ClassFactsCache {
+
+    private static final int MAGIC = 0x43525446;
+    private static final int VERSION = 2;
+    private static final int NEW_STRING = -1;
+    private static final int NULL_STRING = -2;
+
+    private final File file;
+    private final Map<Key, ClassFacts> stored;
+    private final Map<Key, ClassFacts> used = new LinkedHashMap<>();
+    private int hits;
+    private int misses;
+
+    private ClassFactsCache(File file, Map<Key, ClassFacts> stored) {
+        this.file = file;
+        this.stored = stored;
+    }
+
+    // A missing, stale or unreadable cache file just yields an empty cache
+    public static ClassFactsCache load(File file) {
+        Map<Key, ClassFacts> stored = new HashMap<>();
+        if (file.isFile()) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+                if (in.readInt() == MAGIC && in.readInt() == VERSION) {
+                    List<String> strings = new ArrayList<>();
+                    int count = in.readInt();
+                    for (int i = 0; i < count; i++) {
+                        Key key = new Key(in.readUTF(), in.readLong(), in.readLong());
+                        stored.put(key, readClassFacts(in, strings));
+                    }
+                } else {
+                    System.out.println("Ignoring class cache with an unknown format: " + file);
+                }
+            } catch (IOException e) {
+                System.err.println("Ignoring unreadable class cache: " + file + " - " + e.getMessage());
+                stored.clear();
+            }
+        }
+        return new ClassFactsCache(file, stored);
+    }
+
+    public ClassFacts get(String entryName, long crc, long size) {
+        Key key = new Key(entryName, crc, size);
+        ClassFacts classFacts = stored.get(key);
+        if (classFacts != null) {
+            used.put(key, classFacts);
+            hits++;
+        } else {
+            misses++;
+        }
+        return classFacts;
+    }
+
+    public void put(String entryName, long crc, long size, ClassFacts classFacts) {
+        used.put(new Key(entryName, crc, size), classFacts);
+    }
+
+    public int getHits() {
+        return hits;
+    }
+
+    public int getMisses() {
+        return misses;
+    }
+
+    public void save() throws IOException {
+        // Nothing new was parsed and nothing stored went unused, so the file on disk is already current
+        if (misses == 0 && used.size() == stored.size()) {
+            return;
+        }
+        File parent = file.getAbsoluteFile().getParentFile();
+        Files.createDirectories(parent.toPath());
+        File temp = File.createTempFile(file.getName(), ".tmp", parent);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(used.size());
+            Map<String, Integer> strings = new HashMap<>();
+            for (Map.Entry<Key, ClassFacts> entry : used.entrySet()) {
+                Key key = entry.getKey();
+                out.writeUTF(key.entryName);
+                out.writeLong(key.crc);
+                out.writeLong(key.size);
+                writeClassFacts(out, entry.getValue(), strings);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(temp.toPath());
+            throw e;
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static void writeClassFacts(DataOutputStream out, ClassFacts classFacts, Map<String, Integer> strings) throws IOException {
+        writeString(out, classFacts.getName(), strings);
+        out.writeInt(classFacts.getAccess());
+        writeString(out, classFacts.getSuperName(), strings);
+        out.writeInt(classFacts.getInterfaces().size());
+        for (String interfaceName : classFacts.getInterfaces()) {
+            writeString(out, interfaceName, strings);
+        }
+        out.writeInt(classFacts.getMethods().size());
+        for (ClassFacts.MethodFacts method : classFacts.getMethods()) {
+            writeString(out, method.getName(), strings);
+            writeString(out, method.getDesc(), strings);
+            out.writeInt(method.getAccess());
+            out.writeInt(method.getCalls().size());
+            for (ClassFacts.CallSite call : method.getCalls()) {
+                out.writeByte(call.getOpcode());
+                writeString(out, call.getOwner(), strings);
+                writeString(out, call.getName(), strings);
+                writeString(out, call.getDesc(), strings);
+            }
+            out.writeInt(method.getInstantiatedTypes().size());
+            for (String type : method.getInstantiatedTypes()) {
+                writeString(out, type, strings);
+            }
+        }
+    }
+
+    private static ClassFacts readClassFacts(DataInputStream in, List<String> strings) throws IOException {
+        String name = readString(in, strings);
+        int access = in.readInt();
+        String superName = readString(in, strings);
+        int interfaceCount = in.readInt();
+        List<String> interfaces = new ArrayList<>(interfaceCount);
+        for (int i = 0; i < interfaceCount; i++) {
+            interfaces.add(readString(in, strings));
+        }
+        int methodCount = in.readInt();
+        List<ClassFacts.MethodFacts> methods = new ArrayList<>(methodCount);
+        for (int i = 0; i < methodCount; i++) {
+            String methodName = readString(in, strings);
+            String desc = readString(in, strings);
+            int methodAccess = in.readInt();
+            int callCount = in.readInt();
+            List<ClassFacts.CallSite> calls = new ArrayList<>(callCount);
+            for (int j = 0; j < callCount; j++) {
+                int opcode = in.readUnsignedByte();
+                calls.add(new ClassFacts.CallSite(opcode, readString(in, strings), readString(in, strings), readString(in, strings)));
+            }
+            int typeCount = in.readInt();
+            List<String> instantiatedTypes = new ArrayList<>(typeCount);
+            for (int j = 0; j < typeCount; j++) {
+                instantiatedTypes.add(readString(in, strings));
+            }
+            methods.add(new ClassFacts.MethodFacts(name, methodName, desc, methodAccess, calls, instantiatedTypes));
+        }
+        return new ClassFacts(name, access, superName, interfaces, methods);
+    }
+
+    // Each distinct string is written once; later occurrences refer back to it by index
+    private static void writeString(DataOutputStream out, String value, Map<String, Integer> strings) throws IOException {
+        if (value == null) {
+            out.writeInt(NULL_STRING);
+            return;
+        }
+        Integer index = strings.get(value);
+        if (index != null) {
+            out.writeInt(index);
+        } else {
+            out.writeInt(NEW_STRING);
+            out.writeUTF(value);
+            strings.put(value, strings.size());
+        }
+    }
+
+    private static String readString(DataInputStream in, List<String> strings) throws IOException {
+        int index = in.readInt();
+        if (index == NULL_STRING) {
+            return null;
+        }
+        if (index == NEW_STRING) {
+            String value = in.readUTF();
+            strings.add(value);
+            return value;
+        }
+        return strings.get(index);
+    }
+
+    private static class Key {
+
+        private final String entryName;
+        private final long crc;
+        private final long size;
+
+        Key(String entryName, long crc, long size) {
+            this.entryName = entryName;
+            this.crc = crc;
+            this.size = size;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return crc == key.crc && size == key.size && entryName.equals(key.entryName);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(entryName, crc, size);
+        }
+    }
+}
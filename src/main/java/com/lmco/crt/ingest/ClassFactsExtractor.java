@@ -0,0 +1,65 @@
+package com.lmco.crt.ingest;
+
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/*
+ * Streams a class file into ClassFacts without building an ASM tree. Only method declarations, access flags, the
+ * class hierarchy, visitMethodInsn edges and the types created by NEW are recorded; debug info and stack map frames are skipped while parsing.
+ */
+public class ClassFactsExtractor extends ClassVisitor {
+
+    private static final int PARSING_OPTIONS = ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES;
+
+    private String name;
+    private int access;
+    private String superName;
+    private List<String> interfaces;
+    private final List<ClassFacts.MethodFacts> methods = new ArrayList<>();
+
+    private ClassFactsExtractor() {
+        super(Opcodes.ASM7);
+    }
+
+    // Strings are copied out of the class file while parsing, so the buffer may be reused once this returns
+    public static ClassFacts extract(byte[] classFileBuffer, int offset, int length) {
+        ClassFactsExtractor extractor = new ClassFactsExtractor();
+        new ClassReader(classFileBuffer, offset, length).accept(extractor, PARSING_OPTIONS);
+        return new ClassFacts(extractor.name, extractor.access, extractor.superName, extractor.interfaces, extractor.methods);
+    }
+
+    @Override
+    public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+        this.name = name;
+        this.access = access;
+        this.superName = superName;
+        this.interfaces = interfaces != null ? Arrays.asList(interfaces) : Collections.emptyList();
+    }
+
+    @Override
+    public MethodVisitor visitMethod(int access, String name, String descriptor, String signature, String[] exceptions) {
+        List<ClassFacts.CallSite> calls = new ArrayList<>();
+        List<String> instantiatedTypes = new ArrayList<>();
+        methods.add(new ClassFacts.MethodFacts(this.name, name, descriptor, access, calls, instantiatedTypes));
+        return new MethodVisitor(Opcodes.ASM7) {
+            @Override
+            public void visitMethodInsn(int opcode, String owner, String name, String descriptor, boolean isInterface) {
+                calls.add(new ClassFacts.CallSite(opcode, owner, name, descriptor));
+            }
+
+            @Override
+            public void visitTypeInsn(int opcode, String type) {
+                if (opcode == Opcodes.NEW && !instantiatedTypes.contains(type)) {
+                    instantiatedTypes.add(type);
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,389 @@
+package com.lmco.crt.ingest;
+
+import com.lmco.crt.jfr.ClassParseEvent;
+import com.lmco.crt.jfr.IngestEvent;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/*
+ * Reads the class entries of a classpath and turns each one into ClassFacts. A classpath entry is a jar, a Spring
+ * Boot or WAR archive whose BOOT-INF/lib and WEB-INF/lib jars are streamed from the outer archive in memory, or a
+ * directory of class files. With a parallelism above 1 the entries are parsed on a worker pool, but results are
+ * still handed to the consumer on the calling thread and in classpath order, so the caller builds exactly the same
+ * graph as a sequential scan. Entries found in the optional ClassFactsCache are not parsed at all. Archives are read
+ * through JarFile, or memory-mapped through MappedZipFile when mapped archives are enabled.
+ */
+public class JarIngestor {
+
+    // One growable read buffer per parsing thread, reused across entries
+    private static final ThreadLocal<byte[]> READ_BUFFER = ThreadLocal.withInitial(() -> new byte[64 * 1024]);
+    private static final String[] NESTED_JAR_DIRECTORIES = {"BOOT-INF/lib/", "WEB-INF/lib/"};
+    private static final String[] CLASS_DIRECTORIES = {"BOOT-INF/classes/", "WEB-INF/classes/"};
+    // Separates a nested jar from the entries inside it in entry names, as in jar: URLs
+    public static final String NESTED_SEPARATOR = "!/";
+
+    private final int parallelism;
+    private ClassFactsCache cache;
+    private boolean mappedArchives;
+    private PackageFilter packageFilter;
+
+    public JarIngestor(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1: " + parallelism);
+        }
+        this.parallelism = parallelism;
+    }
+
+    public void setCache(ClassFactsCache cache) {
+        this.cache = cache;
+    }
+
+    public void setMappedArchives(boolean mappedArchives) {
+        this.mappedArchives = mappedArchives;
+    }
+
+    // Entries of classes the filter rejects are not read at all
+    public void setPackageFilter(PackageFilter packageFilter) {
+        this.packageFilter = packageFilter;
+    }
+
+    public interface EntryConsumer {
+        void accept(String entryName, long crc, ClassFacts classFacts);
+    }
+
+    public void ingest(File jarFile, Consumer<ClassFacts> consumer) throws IOException {
+        ingest(Collections.singletonList(jarFile), entryName -> true, (entryName, crc, classFacts) -> consumer.accept(classFacts));
+    }
+
+    // Only class entries accepted by the filter are read, e.g. the ones that changed since the last scan
+    public void ingest(File jarFile, Predicate<String> entryFilter, EntryConsumer consumer) throws IOException {
+        ingest(Collections.singletonList(jarFile), entryFilter, consumer);
+    }
+
+    /*
+     * Entry names are the path inside the archive; entries of a nested jar are named after the nested jar, then
+     * NESTED_SEPARATOR, then their own path. With more than one classpath entry every name is also prefixed with the
+     * file name and NESTED_SEPARATOR, so equal paths in different jars stay apart.
+     */
+    public void ingest(List<File> classpath, Predicate<String> entryFilter, EntryConsumer consumer) throws IOException {
+        ForkJoinPool pool = parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+        List<JarFile> openJars = new ArrayList<>();
+        Ingestion ingestion = new Ingestion(pool, entryFilter, consumer);
+        IngestEvent event = new IngestEvent();
+        event.begin();
+        try {
+            for (File file : classpath) {
+                String prefix = classpath.size() > 1 ? file.getName() + NESTED_SEPARATOR : "";
+                if (file.isDirectory()) {
+                    ingestDirectory(ingestion, file.toPath(), prefix);
+                } else if (mappedArchives) {
+                    ingestMappedArchive(ingestion, MappedZipFile.open(file), prefix, true);
+                } else {
+                    JarFile jar = new JarFile(file);
+                    openJars.add(jar);
+                    ingestArchive(ingestion, jar, prefix);
+                }
+            }
+            ingestion.drain(true);
+            event.end();
+            if (event.shouldCommit()) {
+                event.classpath = classpath.toString();
+                event.classesParsed = ingestion.classesParsed;
+                event.classesCached = ingestion.classesCached;
+                event.bytesInflated = ingestion.bytesInflated;
+                event.commit();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while parsing " + classpath);
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to parse " + classpath, e.getCause());
+        } finally {
+            if (pool != null) {
+                pool.shutdownNow();
+            }
+            for (JarFile jar : openJars) {
+                jar.close();
+            }
+        }
+    }
+
+    private void ingestArchive(Ingestion ingestion, JarFile jar, String prefix)
+            throws IOException, InterruptedException, ExecutionException {
+        Enumeration<JarEntry> entries = jar.entries();
+        while (entries.hasMoreElements()) {
+            JarEntry entry = entries.nextElement();
+            String entryName = prefix + entry.getName();
+            if (isNestedJar(entry.getName())) {
+                // The nested jar is inflated as a stream; only the class files inside it are held in memory
+                try (ZipInputStream nestedJar = new ZipInputStream(jar.getInputStream(entry))) {
+                    ingestNestedJar(ingestion, nestedJar, entryName + NESTED_SEPARATOR);
+                } catch (SecurityException | IOException e) {
+                    System.err.println("Skipping entry due to error: " + entryName + " - " + e.getMessage());
+                }
+            } else if (isClassEntry(entry.getName()) && ingestion.accepts(entryName)) {
+                ingestion.submit(entryName, entry.getCrc(), entry.getSize(), () -> parseEntry(jar, entry, entryName));
+            }
+        }
+    }
+
+    private void ingestNestedJar(Ingestion ingestion, ZipInputStream nestedJar, String prefix)
+            throws IOException, InterruptedException, ExecutionException {
+        ZipEntry entry;
+        while ((entry = nestedJar.getNextEntry()) != null) {
+            String entryName = prefix + entry.getName();
+            if (isClassEntry(entry.getName()) && ingestion.accepts(entryName)) {
+                // readFully may replace the buffer with a larger one, so it is only looked up afterwards
+                int length = readFully(nestedJar, entry.getSize());
+                byte[] classFile = Arrays.copyOf(READ_BUFFER.get(), length);
+                // The CRC of a streamed entry may only be known once its data has been read
+                long crc = entry.getCrc() != -1 ? entry.getCrc() : crc(classFile);
+                ingestion.submit(entryName, crc, classFile.length, () -> parseBytes(classFile, entryName));
+            }
+        }
+    }
+
+    // Stored nested jars are opened as a view on the outer mapping, compressed ones are inflated into memory first
+    private void ingestMappedArchive(Ingestion ingestion, MappedZipFile zip, String prefix, boolean outer)
+            throws InterruptedException, ExecutionException {
+        for (MappedZipFile.Entry entry : zip.entries()) {
+            String entryName = prefix + entry.getName();
+            if (outer && isNestedJar(entry.getName())) {
+                try {
+                    MappedZipFile nestedJar = MappedZipFile.of(entry.isStored() ? zip.slice(entry)
+                            : ByteBuffer.wrap(zip.read(entry, new byte[(int) entry.getSize()]), 0, (int) entry.getSize()));
+                    ingestMappedArchive(ingestion, nestedJar, entryName + NESTED_SEPARATOR, false);
+                } catch (IOException e) {
+                    System.err.println("Skipping entry due to error: " + entryName + " - " + e.getMessage());
+                }
+            } else if (isClassEntry(entry.getName()) && ingestion.accepts(entryName)) {
+                ingestion.submit(entryName, entry.getCrc(), entry.getSize(), () -> parseMappedEntry(zip, entry, entryName));
+            }
+        }
+    }
+
+    private void ingestDirectory(Ingestion ingestion, Path directory, String prefix)
+            throws IOException, InterruptedException, ExecutionException {
+        List<Path> classFiles;
+        try (Stream<Path> files = Files.walk(directory)) {
+            classFiles = files.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+        }
+        for (Path classFile : classFiles) {
+            String relativeName = directory.relativize(classFile).toString().replace(File.separatorChar, '/');
+            String entryName = prefix + relativeName;
+            if (isClassEntry(relativeName) && ingestion.accepts(entryName)) {
+                byte[] bytes = Files.readAllBytes(classFile);
+                ingestion.submit(entryName, crc(bytes), bytes.length, () -> parseBytes(bytes, entryName));
+            }
+        }
+    }
+
+    private static boolean isClassEntry(String entryName) {
+        return entryName.endsWith(".class") && !entryName.contains("META-INF/");
+    }
+
+    // Internal class name of a class entry: the path inside its jar, without a BOOT-INF/classes or WEB-INF/classes prefix
+    static String className(String entryName) {
+        String path = entryName.substring(entryName.lastIndexOf(NESTED_SEPARATOR) + 1);
+        if (path.startsWith("/")) {
+            path = path.substring(1);
+        }
+        for (String directory : CLASS_DIRECTORIES) {
+            if (path.startsWith(directory)) {
+                path = path.substring(directory.length());
+                break;
+            }
+        }
+        return path.substring(0, path.length() - ".class".length());
+    }
+
+    private static boolean isNestedJar(String entryName) {
+        if (!entryName.endsWith(".jar")) {
+            return false;
+        }
+        for (String directory : NESTED_JAR_DIRECTORIES) {
+            if (entryName.startsWith(directory)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long crc(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length);
+        return crc.getValue();
+    }
+
+    // JarFile hands out independent entry streams, so this is safe to call from several workers at once
+    private static ClassFacts parseEntry(JarFile jar, JarEntry entry, String entryName) {
+        try (InputStream inputStream = jar.getInputStream(entry)) {
+            int length = readFully(inputStream, entry.getSize());
+            return extract(READ_BUFFER.get(), length, entryName);
+        } catch (SecurityException | IOException | IllegalArgumentException e) {
+            System.err.println("Skipping entry due to error: " + entryName + " - " + e.getMessage());
+            return null;
+        }
+    }
+
+    // The entry is copied or inflated into this thread's read buffer and parsed from there
+    private static ClassFacts parseMappedEntry(MappedZipFile zip, MappedZipFile.Entry entry, String entryName) {
+        try {
+            byte[] buffer = zip.read(entry, READ_BUFFER.get());
+            READ_BUFFER.set(buffer);
+            return extract(buffer, (int) entry.getSize(), entryName);
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Skipping entry due to error: " + entryName + " - " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static ClassFacts parseBytes(byte[] classFile, String entryName) {
+        try {
+            return extract(classFile, classFile.length, entryName);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Skipping entry due to error: " + entryName + " - " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static ClassFacts extract(byte[] classFile, int length, String entryName) {
+        ClassParseEvent event = new ClassParseEvent();
+        event.begin();
+        ClassFacts classFacts = ClassFactsExtractor.extract(classFile, 0, length);
+        event.end();
+        if (event.shouldCommit()) {
+            event.entryName = entryName;
+            event.bytes = length;
+            event.methods = classFacts.getMethods().size();
+            for (ClassFacts.MethodFacts method : classFacts.getMethods()) {
+                event.callSites += method.getCalls().size();
+            }
+            event.commit();
+        }
+        return classFacts;
+    }
+
+    private static int readFully(InputStream inputStream, long sizeHint) throws IOException {
+        byte[] buffer = READ_BUFFER.get();
+        if (sizeHint > buffer.length) {
+            buffer = new byte[(int) sizeHint];
+        }
+        int length = 0;
+        int read;
+        while ((read = inputStream.read(buffer, length, buffer.length - length)) != -1) {
+            length += read;
+            if (length == buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+        }
+        READ_BUFFER.set(buffer);
+        return length;
+    }
+
+    // Entries waiting for their facts, in classpath order; cache hits wait as already completed results
+    private class Ingestion {
+
+        private final ForkJoinPool pool;
+        private final Predicate<String> entryFilter;
+        private final EntryConsumer consumer;
+        private final ArrayDeque<PendingEntry> pending = new ArrayDeque<>();
+        private int classesParsed;
+        private int classesCached;
+        private long bytesInflated;
+
+        Ingestion(ForkJoinPool pool, Predicate<String> entryFilter, EntryConsumer consumer) {
+            this.pool = pool;
+            this.entryFilter = entryFilter;
+            this.consumer = consumer;
+        }
+
+        boolean accepts(String entryName) {
+            return entryFilter.test(entryName) && (packageFilter == null || packageFilter.accepts(className(entryName)));
+        }
+
+        void submit(String entryName, long crc, long size, Callable<ClassFacts> parser)
+                throws InterruptedException, ExecutionException {
+            ClassFacts cached = cache != null && crc != -1 ? cache.get(entryName, crc, size) : null;
+            Future<ClassFacts> result;
+            if (cached != null) {
+                result = CompletableFuture.completedFuture(cached);
+            } else if (pool == null) {
+                try {
+                    result = CompletableFuture.completedFuture(parser.call());
+                } catch (Exception e) {
+                    throw new ExecutionException(e);
+                }
+            } else {
+                result = pool.submit(parser);
+            }
+            pending.add(new PendingEntry(entryName, crc, size, result, cached == null));
+            drain(false);
+        }
+
+        // Hands finished entries to the consumer in order; with all set, waits for every pending entry
+        void drain(boolean all) throws InterruptedException, ExecutionException {
+            while (!pending.isEmpty() && (all || pending.peek().result.isDone())) {
+                PendingEntry entry = pending.poll();
+                ClassFacts classFacts = entry.result.get();
+                if (classFacts == null) {
+                    continue;
+                }
+                if (entry.parsed) {
+                    classesParsed++;
+                    bytesInflated += entry.size;
+                } else {
+                    classesCached++;
+                }
+                if (entry.parsed && cache != null && entry.crc != -1) {
+                    cache.put(entry.name, entry.crc, entry.size, classFacts);
+                }
+                // The cache keeps the class as parsed, filtering is applied on the way out
+                consumer.accept(entry.name, entry.crc, packageFilter != null ? packageFilter.apply(classFacts) : classFacts);
+            }
+        }
+    }
+
+    private static class PendingEntry {
+
+        private final String name;
+        private final long crc;
+        private final long size;
+        private final Future<ClassFacts> result;
+        private final boolean parsed;
+
+        PendingEntry(String name, long crc, long size, Future<ClassFacts> result, boolean parsed) {
+            this.name = name;
+            this.crc = crc;
+            this.size = size;
+            this.result = result;
+            this.parsed = parsed;
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.lmco.crt.ingest;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/*
+ * A zip archive read straight from a memory-mapped file or any other buffer. The central directory (including its
+ * zip64 form) is parsed once, and entries are copied or inflated into caller-supplied buffers with a per-thread
+ * Inflater, so reading an entry allocates nothing once the buffers have grown. A stored entry can also be viewed in
+ * place as a slice of the archive, which is how stored nested jars are opened without copying them.
+ * Reads only use absolute positions on the shared buffer, so several threads may read entries at the same time.
+ */
+public class MappedZipFile {
+
+    private static final int CENTRAL_HEADER = 0x02014b50;
+    private static final int LOCAL_HEADER = 0x04034b50;
+    private static final int END_OF_CENTRAL_DIRECTORY = 0x06054b50;
+    private static final int ZIP64_END_OF_CENTRAL_DIRECTORY = 0x06064b50;
+    private static final int ZIP64_LOCATOR = 0x07064b50;
+    private static final int ZIP64_EXTRA = 0x0001;
+    private static final int MAX_COMMENT = 0xFFFF;
+    private static final int STORED = 0;
+    private static final int DEFLATED = 8;
+
+    private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(() -> new Inflater(true));
+    private static final ThreadLocal<byte[]> INPUT_BUFFER = ThreadLocal.withInitial(() -> new byte[64 * 1024]);
+
+    private final ByteBuffer data;
+    private final List<Entry> entries;
+
+    private MappedZipFile(ByteBuffer data) throws IOException {
+        this.data = data.slice().order(ByteOrder.LITTLE_ENDIAN);
+        this.entries = Collections.unmodifiableList(readCentralDirectory());
+    }
+
+    // The mapping outlives the channel; archives over 2 GB cannot be mapped in one piece and are rejected
+    public static MappedZipFile open(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Archive too large to map: " + file);
+            }
+            return new MappedZipFile(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public static MappedZipFile of(ByteBuffer data) throws IOException {
+        return new MappedZipFile(data);
+    }
+
+    public List<Entry> entries() {
+        return entries;
+    }
+
+    // The stored bytes of the entry as a view on the archive, without copying
+    public ByteBuffer slice(Entry entry) throws IOException {
+        if (entry.method != STORED) {
+            throw new ZipException("Entry is compressed: " + entry.name);
+        }
+        ByteBuffer view = data.duplicate();
+        int offset = dataOffset(entry);
+        view.limit(offset + (int) entry.size).position(offset);
+        return view.slice();
+    }
+
+    /*
+     * Copies or inflates the entry into the start of the given buffer and returns it, or a larger replacement when
+     * the entry did not fit. The entry occupies the first getSize() bytes.
+     */
+    public byte[] read(Entry entry, byte[] buffer) throws IOException {
+        if (entry.size > Integer.MAX_VALUE - 8) {
+            throw new ZipException("Entry too large: " + entry.name);
+        }
+        byte[] output = buffer.length >= entry.size ? buffer : new byte[(int) entry.size];
+        int offset = dataOffset(entry);
+        if (entry.method == STORED) {
+            copy(offset, output, (int) entry.size);
+            return output;
+        }
+        if (entry.method != DEFLATED) {
+            throw new ZipException("Unsupported compression method " + entry.method + ": " + entry.name);
+        }
+
+        byte[] input = INPUT_BUFFER.get();
+        if (input.length < entry.compressedSize + 1) {
+            input = new byte[(int) entry.compressedSize + 1];
+            INPUT_BUFFER.set(input);
+        }
+        copy(offset, input, (int) entry.compressedSize);
+        // A trailing zero byte lets raw inflation see the end of the last block
+        input[(int) entry.compressedSize] = 0;
+        Inflater inflater = INFLATER.get();
+        inflater.reset();
+        inflater.setInput(input, 0, (int) entry.compressedSize + 1);
+        try {
+            int length = 0;
+            while (!inflater.finished()) {
+                if (length == output.length) {
+                    output = Arrays.copyOf(output, Math.max(16, output.length * 2));
+                }
+                int inflated = inflater.inflate(output, length, output.length - length);
+                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new ZipException("Truncated entry: " + entry.name);
+                }
+                length += inflated;
+            }
+            if (length != entry.size) {
+                throw new ZipException("Entry size mismatch: " + entry.name);
+            }
+        } catch (DataFormatException e) {
+            throw new ZipException("Invalid compressed data in " + entry.name + ": " + e.getMessage());
+        }
+        return output;
+    }
+
+    private void copy(int offset, byte[] target, int length) {
+        ByteBuffer view = data.duplicate();
+        view.position(offset);
+        view.get(target, 0, length);
+    }
+
+    private int dataOffset(Entry entry) throws IOException {
+        int header = (int) entry.localHeaderOffset;
+        if (header < 0 || header + 30 > data.limit() || data.getInt(header) != LOCAL_HEADER) {
+            throw new ZipException("Invalid local header: " + entry.name);
+        }
+        int offset = header + 30 + (data.getShort(header + 26) & 0xFFFF) + (data.getShort(header + 28) & 0xFFFF);
+        if (offset + entry.compressedSize > data.limit()) {
+            throw new ZipException("Entry data out of bounds: " + entry.name);
+        }
+        return offset;
+    }
+
+    private List<Entry> readCentralDirectory() throws IOException {
+        int end = findEndOfCentralDirectory();
+        long entryCount = data.getShort(end + 10) & 0xFFFF;
+        long directorySize = data.getInt(end + 12) & 0xFFFFFFFFL;
+        long directoryOffset = data.getInt(end + 16) & 0xFFFFFFFFL;
+        int locator = end - 20;
+        if (locator >= 0 && data.getInt(locator) == ZIP64_LOCATOR) {
+            long zip64End = data.getLong(locator + 8);
+            if (zip64End < 0 || zip64End + 56 > data.limit() || data.getInt((int) zip64End) != ZIP64_END_OF_CENTRAL_DIRECTORY) {
+                throw new ZipException("Invalid zip64 end of central directory");
+            }
+            entryCount = data.getLong((int) zip64End + 32);
+            directorySize = data.getLong((int) zip64End + 40);
+            directoryOffset = data.getLong((int) zip64End + 48);
+        }
+        if (directoryOffset + directorySize > end) {
+            throw new ZipException("Invalid central directory");
+        }
+
+        List<Entry> result = new ArrayList<>((int) Math.min(entryCount, 1 << 20));
+        int position = (int) directoryOffset;
+        int directoryEnd = (int) (directoryOffset + directorySize);
+        while (position + 46 <= directoryEnd && data.getInt(position) == CENTRAL_HEADER) {
+            int method = data.getShort(position + 10) & 0xFFFF;
+            long crc = data.getInt(position + 16) & 0xFFFFFFFFL;
+            long compressedSize = data.getInt(position + 20) & 0xFFFFFFFFL;
+            long size = data.getInt(position + 24) & 0xFFFFFFFFL;
+            int nameLength = data.getShort(position + 28) & 0xFFFF;
+            int extraLength = data.getShort(position + 30) & 0xFFFF;
+            int commentLength = data.getShort(position + 32) & 0xFFFF;
+            long localHeaderOffset = data.getInt(position + 42) & 0xFFFFFFFFL;
+
+            byte[] nameBytes = new byte[nameLength];
+            copy(position + 46, nameBytes, nameLength);
+            String name = new String(nameBytes, StandardCharsets.UTF_8);
+
+            // Sizes and offsets that do not fit in 32 bits are moved to the zip64 extra field, in this order
+            int extra = position + 46 + nameLength;
+            int extraEnd = extra + extraLength;
+            while (extra + 4 <= extraEnd) {
+                int id = data.getShort(extra) & 0xFFFF;
+                int length = data.getShort(extra + 2) & 0xFFFF;
+                if (id == ZIP64_EXTRA) {
+                    int field = extra + 4;
+                    if (size == 0xFFFFFFFFL) {
+                        size = data.getLong(field);
+                        field += 8;
+                    }
+                    if (compressedSize == 0xFFFFFFFFL) {
+                        compressedSize = data.getLong(field);
+                        field += 8;
+                    }
+                    if (localHeaderOffset == 0xFFFFFFFFL) {
+                        localHeaderOffset = data.getLong(field);
+                    }
+                }
+                extra += 4 + length;
+            }
+            result.add(new Entry(name, method, crc, compressedSize, size, localHeaderOffset));
+            position = extraEnd + commentLength;
+        }
+        return result;
+    }
+
+    // The end record sits at the very end of the archive, before a comment of up to 64 KB
+    private int findEndOfCentralDirectory() throws IOException {
+        int lowest = Math.max(0, data.limit() - 22 - MAX_COMMENT);
+        for (int position = data.limit() - 22; position >= lowest; position--) {
+            if (data.getInt(position) == END_OF_CENTRAL_DIRECTORY) {
+                return position;
+            }
+        }
+        throw new ZipException("Not a zip archive: end of central directory not found");
+    }
+
+    public static class Entry {
+
+        private final String name;
+        private final int method;
+        private final long crc;
+        private final long compressedSize;
+        private final long size;
+        private final long localHeaderOffset;
+
+        Entry(String name, int method, long crc, long compressedSize, long size, long localHeaderOffset) {
+            this.name = name;
+            this.method = method;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.localHeaderOffset = localHeaderOffset;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getCrc() {
+            return crc;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public boolean isStored() {
+            return method == STORED;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.lmco.crt.ingest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Include and exclude package prefixes kept in a trie of package name segments, so "java" matches java/lang/String
+ * but not javax/net/SocketFactory. The longest matching prefix decides; a class matching no prefix is accepted
+ * unless include prefixes were given. Excluded classes are never parsed. In BOUNDARY mode calls into them stay in
+ * the graph as opaque methods without callees, in SKIP mode those calls are dropped as well.
+ */
+public class PackageFilter {
+
+    public enum Mode {
+        SKIP, BOUNDARY
+    }
+
+    private final Node root = new Node();
+    private final boolean acceptUnmatched;
+    private final Mode mode;
+
+    public PackageFilter(List<String> includes, List<String> excludes, Mode mode) {
+        for (String include : includes) {
+            add(include, Boolean.TRUE);
+        }
+        for (String exclude : excludes) {
+            add(exclude, Boolean.FALSE);
+        }
+        this.acceptUnmatched = includes.isEmpty();
+        this.mode = mode;
+    }
+
+    // Comma separated prefixes, in dotted or internal form; null when neither list names a prefix
+    public static PackageFilter parse(String includes, String excludes, String mode) {
+        if (split(includes).isEmpty() && split(excludes).isEmpty()) {
+            return null;
+        }
+        return new PackageFilter(split(includes), split(excludes),
+                mode == null || mode.isEmpty() ? Mode.BOUNDARY : Mode.valueOf(mode.trim().toUpperCase()));
+    }
+
+    private static List<String> split(String prefixes) {
+        if (prefixes == null || prefixes.trim().isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> result = new ArrayList<>();
+        for (String prefix : prefixes.split(",")) {
+            if (!prefix.trim().isEmpty()) {
+                result.add(prefix.trim());
+            }
+        }
+        return result;
+    }
+
+    private void add(String prefix, Boolean accept) {
+        Node node = root;
+        for (String segment : prefix.replace('.', '/').split("/")) {
+            if (!segment.isEmpty()) {
+                node = node.children.computeIfAbsent(segment, k -> new Node());
+            }
+        }
+        node.accept = accept;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    // Whether a class, given by its internal name such as java/lang/String, is analyzed
+    public boolean accepts(String className) {
+        Boolean decision = root.accept;
+        Node node = root;
+        int start = 0;
+        int end;
+        // Only package segments are matched, the simple class name after the last '/' never is
+        while ((end = className.indexOf('/', start)) >= 0) {
+            node = node.children.get(className.substring(start, end));
+            if (node == null) {
+                break;
+            }
+            if (node.accept != null) {
+                decision = node.accept;
+            }
+            start = end + 1;
+        }
+        return decision != null ? decision : acceptUnmatched;
+    }
+
+    // In SKIP mode, the class without its calls into excluded classes; otherwise the class itself
+    public ClassFacts apply(ClassFacts classFacts) {
+        if (mode != Mode.SKIP) {
+            return classFacts;
+        }
+        List<ClassFacts.MethodFacts> methods = new ArrayList<>(classFacts.getMethods().size());
+        for (ClassFacts.MethodFacts method : classFacts.getMethods()) {
+            List<ClassFacts.CallSite> calls = new ArrayList<>(method.getCalls().size());
+            for (ClassFacts.CallSite call : method.getCalls()) {
+                if (accepts(call.getOwner())) {
+                    calls.add(call);
+                }
+            }
+            methods.add(calls.size() == method.getCalls().size() ? method
+                    : new ClassFacts.MethodFacts(classFacts.getName(), method.getName(), method.getDesc(),
+                    method.getAccess(), calls, method.getInstantiatedTypes()));
+        }
+        return new ClassFacts(classFacts.getName(), classFacts.getAccess(), classFacts.getSuperName(),
+                classFacts.getInterfaces(), methods);
+    }
+
+    private static class Node {
+
+        private final Map<String, Node> children = new HashMap<>();
+        private Boolean accept;
+    }
+}
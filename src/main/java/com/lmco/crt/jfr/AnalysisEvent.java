@@ -0,0 +1,13 @@
+package com.lmco.crt.jfr;
+
+// Ingesting a classpath and computing the methods reachable from its entry points
+public class AnalysisEvent extends RecordedEvent {
+
+    public String classpath;
+
+    public int classes;
+
+    public int methods;
+
+    public int reachableMethods;
+}
@@ -0,0 +1,11 @@
+package com.lmco.crt.jfr;
+
+// Backward search from the targets, labelling every caller with the targets it reaches
+public class CallerSearchEvent extends RecordedEvent {
+
+    public int targets;
+
+    public int nodes;
+
+    public long edges;
+}
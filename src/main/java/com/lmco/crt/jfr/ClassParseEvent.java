@@ -0,0 +1,14 @@
+package com.lmco.crt.jfr;
+
+// Extracting the facts of one class file with ASM; recorded per class, so by default only for classes taking a
+// millisecond or more
+public class ClassParseEvent extends RecordedEvent {
+
+    public String entryName;
+
+    public long bytes;
+
+    public int methods;
+
+    public int callSites;
+}
@@ -0,0 +1,6 @@
+package com.lmco.crt.jfr;
+
+public interface EventFactory {
+
+    EventHandle create(RecordedEvent event);
+}
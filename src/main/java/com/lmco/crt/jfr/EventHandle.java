@@ -0,0 +1,13 @@
+package com.lmco.crt.jfr;
+
+// The flight recorder event behind a RecordedEvent
+public interface EventHandle {
+
+    void begin();
+
+    void end();
+
+    boolean shouldCommit();
+
+    void commit(RecordedEvent values);
+}
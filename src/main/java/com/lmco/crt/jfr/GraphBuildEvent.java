@@ -0,0 +1,11 @@
+package com.lmco.crt.jfr;
+
+// Building the call graph from the parsed classes
+public class GraphBuildEvent extends RecordedEvent {
+
+    public int classes;
+
+    public int methods;
+
+    public int edges;
+}
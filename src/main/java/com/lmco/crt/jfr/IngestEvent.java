@@ -0,0 +1,13 @@
+package com.lmco.crt.jfr;
+
+// Reading and parsing the class entries of a classpath
+public class IngestEvent extends RecordedEvent {
+
+    public String classpath;
+
+    public int classesParsed;
+
+    public int classesCached;
+
+    public long bytesInflated;
+}
@@ -0,0 +1,45 @@
+package com.lmco.crt.jfr;
+
+/*
+ * Base of the events recorded by the analysis. The tool stays on Java 8, so the jdk.jfr.Event subclasses live in
+ * com.lmco.crt.jfr.recorder, compiled for Java 11, and are only loaded when jdk.jfr is present. Without it the
+ * events are plain objects and nothing is recorded.
+ */
+public abstract class RecordedEvent {
+
+    private static final EventFactory FACTORY = loadFactory();
+
+    private final EventHandle handle = FACTORY != null ? FACTORY.create(this) : null;
+
+    private static EventFactory loadFactory() {
+        try {
+            Class.forName("jdk.jfr.Event");
+            return (EventFactory) Class.forName("com.lmco.crt.jfr.recorder.FlightRecorderEvents").newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return null;
+        }
+    }
+
+    public void begin() {
+        if (handle != null) {
+            handle.begin();
+        }
+    }
+
+    public void end() {
+        if (handle != null) {
+            handle.end();
+        }
+    }
+
+    public boolean shouldCommit() {
+        return handle != null && handle.shouldCommit();
+    }
+
+    // Copies the fields to the flight recorder event and commits it
+    public void commit() {
+        if (handle != null) {
+            handle.commit(this);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.lmco.crt.jfr;
+
+// Enumerating the execution paths of every target and writing them to the report
+public class ReportWriteEvent extends RecordedEvent {
+
+    public String report;
+
+    public int sections;
+
+    public int sectionsCopied;
+
+    public long paths;
+
+    public long bytesWritten;
+}
@@ -0,0 +1,303 @@
+package com.lmco.crt.tools;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+/*
+ * Writes a fat jar of generated classes and a VulnerableCode.csv naming some of their methods, for scale tests
+ * that cannot use real jars. Class gen/p<i / 1000>/C<i> declares a constructor and methodsPerClass instance methods
+ * m0..mN; each method makes fanOut calls, creating the receiver with NEW first like real code does. Every call,
+ * hub and interface calls included, names a method of a class with a lower index, so the calls as written form a
+ * DAG except for the cycleRatio share that calls a higher index; resolving a virtual call to the overrides of
+ * subclasses can still lead back up a chain. Classes form inheritance chains of hierarchyDepth with an abstract
+ * base, but the last class is never a base so every chain ends in a concrete class; virtual calls name the callee
+ * class and create the leaf of its chain, so they dispatch through the hierarchy. The interfaceRatio share of
+ * classes other than chain bases implements one of the interfaces gen/I<k> with run()V, called through
+ * invokeinterface by the interfaceCallRatio share of calls. The first hubs classes' m0 are hub methods, each called
+ * about hubFanIn times. gen/Main.main calls into the last classes. The same settings and seed always give the same
+ * jar.
+ */
+public class SyntheticJarGenerator {
+
+    public static final String PACKAGE = "gen/";
+
+    private int classes = 1000;
+    private int methodsPerClass = 10;
+    private int fanOut = 4;
+    private int hierarchyDepth = 3;
+    private int interfaces = 10;
+    private double interfaceRatio = 0.2;
+    private double interfaceCallRatio = 0.1;
+    private double cycleRatio = 0.01;
+    private int hubs = 10;
+    private int hubFanIn = 100;
+    private int targets = 20;
+    private long seed = 42L;
+
+    // Filled by generate
+    private final List<String> targetMethods = new ArrayList<>();
+    private final List<String> entryPoints = new ArrayList<>();
+    private long callCount;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: SyntheticJarGenerator <jar> <csv> (settings as -Dcrt.gen.<name>=<value>)");
+            return;
+        }
+        SyntheticJarGenerator generator = new SyntheticJarGenerator();
+        generator.setClasses(Integer.getInteger("crt.gen.classes", generator.classes));
+        generator.setMethodsPerClass(Integer.getInteger("crt.gen.methodsPerClass", generator.methodsPerClass));
+        generator.setFanOut(Integer.getInteger("crt.gen.fanOut", generator.fanOut));
+        generator.setHierarchyDepth(Integer.getInteger("crt.gen.hierarchyDepth", generator.hierarchyDepth));
+        generator.setInterfaces(Integer.getInteger("crt.gen.interfaces", generator.interfaces),
+                doubleProperty("crt.gen.interfaceRatio", generator.interfaceRatio),
+                doubleProperty("crt.gen.interfaceCallRatio", generator.interfaceCallRatio));
+        generator.setCycleRatio(doubleProperty("crt.gen.cycleRatio", generator.cycleRatio));
+        generator.setHubs(Integer.getInteger("crt.gen.hubs", generator.hubs),
+                Integer.getInteger("crt.gen.hubFanIn", generator.hubFanIn));
+        generator.setTargets(Integer.getInteger("crt.gen.targets", generator.targets));
+        generator.setSeed(Long.getLong("crt.gen.seed", generator.seed));
+        long start = System.currentTimeMillis();
+        generator.generate(new File(args[0]), new File(args[1]));
+        System.out.println("Generated " + generator.classes + " classes, " + generator.methodCount() + " methods and "
+                + generator.callCount + " calls in " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    private static double doubleProperty(String name, double defaultValue) {
+        String value = System.getProperty(name);
+        return value != null ? Double.parseDouble(value) : defaultValue;
+    }
+
+    public void setClasses(int classes) {
+        this.classes = classes;
+    }
+
+    public void setMethodsPerClass(int methodsPerClass) {
+        this.methodsPerClass = methodsPerClass;
+    }
+
+    public void setFanOut(int fanOut) {
+        this.fanOut = fanOut;
+    }
+
+    // 1 gives classes without superclasses
+    public void setHierarchyDepth(int hierarchyDepth) {
+        this.hierarchyDepth = Math.max(1, hierarchyDepth);
+    }
+
+    public void setInterfaces(int interfaces, double interfaceRatio, double interfaceCallRatio) {
+        this.interfaces = interfaces;
+        this.interfaceRatio = interfaceRatio;
+        this.interfaceCallRatio = interfaceCallRatio;
+    }
+
+    public void setCycleRatio(double cycleRatio) {
+        this.cycleRatio = cycleRatio;
+    }
+
+    public void setHubs(int hubs, int hubFanIn) {
+        this.hubs = hubs;
+        this.hubFanIn = hubFanIn;
+    }
+
+    public void setTargets(int targets) {
+        this.targets = targets;
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    public void generate(File jarFile, File csvFile) throws IOException {
+        targetMethods.clear();
+        entryPoints.clear();
+        callCount = 0;
+        Random random = new Random(seed);
+        int[] implemented = new int[classes];
+        for (int classIndex = 0; classIndex < classes; classIndex++) {
+            implemented[classIndex] = interfaces > 0 && !isAbstractBase(classIndex) && random.nextDouble() < interfaceRatio
+                    ? random.nextInt(interfaces) : -1;
+        }
+        // One implementor per interface to create for invokeinterface calls, the first class implementing it
+        int[] implementors = new int[interfaces];
+        Arrays.fill(implementors, -1);
+        for (int classIndex = classes - 1; classIndex >= 0; classIndex--) {
+            if (implemented[classIndex] >= 0) {
+                implementors[implemented[classIndex]] = classIndex;
+            }
+        }
+        double hubCallRatio = hubs == 0 ? 0 : Math.min(1.0, (double) hubs * hubFanIn / ((double) methodCount() * fanOut));
+
+        try (JarOutputStream out = new JarOutputStream(new FileOutputStream(jarFile))) {
+            for (int interfaceIndex = 0; interfaceIndex < interfaces; interfaceIndex++) {
+                ClassWriter classWriter = new ClassWriter(0);
+                classWriter.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT | Opcodes.ACC_INTERFACE,
+                        interfaceName(interfaceIndex), null, "java/lang/Object", null);
+                classWriter.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_ABSTRACT, "run", "()V", null, null).visitEnd();
+                classWriter.visitEnd();
+                write(out, interfaceName(interfaceIndex), classWriter);
+            }
+            for (int classIndex = 0; classIndex < classes; classIndex++) {
+                String className = className(classIndex);
+                boolean base = classIndex % hierarchyDepth == 0;
+                String superName = base ? "java/lang/Object" : className(classIndex - 1);
+                int access = Opcodes.ACC_PUBLIC | (isAbstractBase(classIndex) ? Opcodes.ACC_ABSTRACT : 0);
+                String[] interfaceNames = implemented[classIndex] >= 0
+                        ? new String[]{interfaceName(implemented[classIndex])} : null;
+                ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+                classWriter.visit(Opcodes.V1_8, access, className, null, superName, interfaceNames);
+
+                MethodVisitor constructor = classWriter.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+                constructor.visitCode();
+                constructor.visitVarInsn(Opcodes.ALOAD, 0);
+                constructor.visitMethodInsn(Opcodes.INVOKESPECIAL, superName, "<init>", "()V", false);
+                constructor.visitInsn(Opcodes.RETURN);
+                constructor.visitMaxs(0, 0);
+                constructor.visitEnd();
+
+                for (int methodIndex = 0; methodIndex < methodsPerClass; methodIndex++) {
+                    MethodVisitor method = classWriter.visitMethod(Opcodes.ACC_PUBLIC, "m" + methodIndex, "()V", null, null);
+                    method.visitCode();
+                    for (int call = 0; call < fanOut; call++) {
+                        writeCall(method, random, classIndex, hubCallRatio, implementors);
+                    }
+                    method.visitInsn(Opcodes.RETURN);
+                    method.visitMaxs(0, 0);
+                    method.visitEnd();
+                }
+                if (interfaceNames != null) {
+                    MethodVisitor run = classWriter.visitMethod(Opcodes.ACC_PUBLIC, "run", "()V", null, null);
+                    run.visitCode();
+                    writeCall(run, random, classIndex, hubCallRatio, implementors);
+                    run.visitInsn(Opcodes.RETURN);
+                    run.visitMaxs(0, 0);
+                    run.visitEnd();
+                }
+                classWriter.visitEnd();
+                write(out, className, classWriter);
+            }
+            write(out, PACKAGE + "Main", mainClass());
+        }
+        writeTargets(csvFile, random);
+    }
+
+    private void writeCall(MethodVisitor method, Random random, int classIndex, double hubCallRatio, int[] implementors) {
+        double choice = random.nextDouble();
+        if (choice < hubCallRatio) {
+            // Only hubs below the caller, so hubs never call themselves or each other in a cycle
+            if (classIndex > 0) {
+                writeVirtualCall(method, random.nextInt(Math.min(hubs, classIndex)), 0);
+            }
+        } else if ((choice -= hubCallRatio) < interfaceCallRatio && interfaces > 0) {
+            int interfaceIndex = random.nextInt(interfaces);
+            if (implementors[interfaceIndex] >= 0 && implementors[interfaceIndex] < classIndex) {
+                writeNew(method, implementors[interfaceIndex]);
+                method.visitMethodInsn(Opcodes.INVOKEINTERFACE, interfaceName(interfaceIndex), "run", "()V", true);
+                callCount++;
+            }
+        } else if ((choice -= interfaceCallRatio) < cycleRatio && classIndex < classes - 1) {
+            writeVirtualCall(method, classIndex + 1 + random.nextInt(classes - classIndex - 1),
+                    random.nextInt(methodsPerClass));
+        } else if (classIndex > 0) {
+            writeVirtualCall(method, random.nextInt(classIndex), random.nextInt(methodsPerClass));
+        }
+    }
+
+    // The receiver is the leaf of the callee's chain, so the call may dispatch to any class in between
+    private void writeVirtualCall(MethodVisitor method, int calleeClass, int calleeMethod) {
+        writeNew(method, Math.min(calleeClass - calleeClass % hierarchyDepth + hierarchyDepth - 1, classes - 1));
+        method.visitMethodInsn(Opcodes.INVOKEVIRTUAL, className(calleeClass), "m" + calleeMethod, "()V", false);
+        callCount++;
+    }
+
+    // The last class is never abstract, since the leaf of its chain is itself
+    private boolean isAbstractBase(int classIndex) {
+        return hierarchyDepth > 1 && classIndex % hierarchyDepth == 0 && classIndex < classes - 1;
+    }
+
+    private void writeNew(MethodVisitor method, int classIndex) {
+        method.visitTypeInsn(Opcodes.NEW, className(classIndex));
+        method.visitInsn(Opcodes.DUP);
+        method.visitMethodInsn(Opcodes.INVOKESPECIAL, className(classIndex), "<init>", "()V", false);
+    }
+
+    private ClassWriter mainClass() {
+        ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        classWriter.visit(Opcodes.V1_8, Opcodes.ACC_PUBLIC, PACKAGE + "Main", null, "java/lang/Object", null);
+        MethodVisitor main = classWriter.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "main",
+                "([Ljava/lang/String;)V", null, null);
+        main.visitCode();
+        for (int classIndex = Math.max(0, classes - 10); classIndex < classes; classIndex++) {
+            writeVirtualCall(main, classIndex, 0);
+            entryPoints.add(className(classIndex) + ".m0()V");
+        }
+        main.visitInsn(Opcodes.RETURN);
+        main.visitMaxs(0, 0);
+        main.visitEnd();
+        classWriter.visitEnd();
+        return classWriter;
+    }
+
+    // Two targets per vulnerability ID; the first targets are hub methods, every tenth one names a whole class
+    private void writeTargets(File csvFile, Random random) throws IOException {
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(csvFile))) {
+            writer.write("Vulnerability ID, Vulnerable Class, Vulnerable Method\n");
+            for (int target = 0; target < targets && classes > 0; target++) {
+                int classIndex = target < Math.min(hubs, classes) ? target : random.nextInt(classes);
+                int methodIndex = target < hubs ? 0 : random.nextInt(methodsPerClass);
+                String vulnId = String.format("CVE-GEN-%05d", target / 2);
+                if (target % 10 == 9) {
+                    writer.write(vulnId + ", " + className(classIndex) + ",\n");
+                } else {
+                    writer.write(vulnId + ", " + className(classIndex) + ", m" + methodIndex + "\n");
+                    targetMethods.add(className(classIndex) + ".m" + methodIndex + "()V");
+                }
+            }
+        }
+    }
+
+    private static void write(JarOutputStream out, String className, ClassWriter classWriter) throws IOException {
+        out.putNextEntry(new JarEntry(className + ".class"));
+        out.write(classWriter.toByteArray());
+        out.closeEntry();
+    }
+
+    private static String className(int classIndex) {
+        return PACKAGE + "p" + classIndex / 1000 + "/C" + classIndex;
+    }
+
+    private static String interfaceName(int interfaceIndex) {
+        return PACKAGE + "I" + interfaceIndex;
+    }
+
+    public long methodCount() {
+        return (long) classes * methodsPerClass;
+    }
+
+    public long getCallCount() {
+        return callCount;
+    }
+
+    // Signatures of the method targets written to the CSV, in order
+    public List<String> getTargetMethods() {
+        return targetMethods;
+    }
+
+    // The methods gen/Main.main calls
+    public List<String> getEntryPoints() {
+        return entryPoints;
+    }
+}
@@ -0,0 +1,114 @@
+package com.lmco.crt.util;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+
+/*
+ * Reads vulnerability feeds in the VulnerableCode.csv layout (ID, class, optional method) line by line, from any
+ * number of files. Targets are normalised to the analyzers' form, class or class.method with '/' in the class name
+ * and no whitespace, and every distinct target is kept as one shared String however many IDs and files name it.
+ * A target listed twice under the same ID is kept once.
+ */
+public class TargetLoader {
+
+    private final Map<String, Set<String>> targetsById = new LinkedHashMap<>();
+    private final Map<String, String> targetPool = new HashMap<>();
+    private long rowCount;
+
+    // CSV files, or directories whose .csv files are read in name order
+    public void load(List<File> feeds) throws IOException {
+        for (File feed : feeds) {
+            if (feed.isDirectory()) {
+                File[] csvFiles = feed.listFiles((dir, name) -> name.toLowerCase().endsWith(".csv"));
+                if (csvFiles != null) {
+                    Arrays.sort(csvFiles);
+                    load(Arrays.asList(csvFiles));
+                }
+            } else {
+                try (BufferedReader reader = Files.newBufferedReader(feed.toPath(), StandardCharsets.UTF_8)) {
+                    load(reader);
+                }
+            }
+        }
+    }
+
+    public void load(InputStream in) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            load(reader);
+        }
+    }
+
+    public void load(Reader in) throws IOException {
+        BufferedReader reader = in instanceof BufferedReader ? (BufferedReader) in : new BufferedReader(in);
+        List<String> columns = new ArrayList<>(3);
+        String line = reader.readLine();
+        // Each file may start with the header row
+        if (line != null && line.replace(" ", "").toLowerCase().startsWith("vulnerabilityid")) {
+            line = reader.readLine();
+        }
+        for (; line != null; line = reader.readLine()) {
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            split(line, columns);
+            String vulnId = columns.get(0);
+            String className = columns.size() > 1 ? columns.get(1).replace('.', '/') : "";
+            String methodName = columns.size() > 2 ? columns.get(2) : "";
+            if (vulnId.isEmpty() || className.isEmpty() || columns.size() > 3) {
+                System.out.println("Invalid line: " + line);
+                continue;
+            }
+            rowCount++;
+            String target = methodName.isEmpty() ? className : className + "." + methodName;
+            targetsById.computeIfAbsent(vulnId, k -> new LinkedHashSet<>())
+                    .add(targetPool.computeIfAbsent(target, k -> k));
+        }
+    }
+
+    // Comma separated columns with whitespace removed; a column in double quotes may contain commas
+    private static void split(String line, List<String> columns) {
+        columns.clear();
+        StringBuilder column = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == ',' && !quoted) {
+                columns.add(column.toString());
+                column.setLength(0);
+            } else if (!Character.isWhitespace(c)) {
+                column.append(c);
+            }
+        }
+        columns.add(column.toString());
+        // A class-only row may or may not end with an empty method column
+        if (columns.size() == 3 && columns.get(2).isEmpty()) {
+            columns.remove(2);
+        }
+    }
+
+    // Vulnerability ID to its distinct targets, in the order the feeds list them
+    public Map<String, List<String>> getTargets() {
+        Map<String, List<String>> targets = new LinkedHashMap<>();
+        for (Map.Entry<String, Set<String>> entry : targetsById.entrySet()) {
+            targets.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+        }
+        return targets;
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    public int getUniqueTargetCount() {
+        return targetPool.size();
+    }
+}
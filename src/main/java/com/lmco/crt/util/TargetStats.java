@@ -0,0 +1,113 @@
+package com.lmco.crt.util;
+
+import com.lmco.crt.graph.SearchStats;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/*
+ * What each report section cost: wall time, the work of its path search and the bytes the thread allocated meanwhile.
+ * Sections are timed between start and stop on one thread, and written as CSV at the end of the run so expensive
+ * targets can be found and sorted with any tool. Allocated bytes are -1 where the JVM cannot measure them.
+ */
+public class TargetStats {
+
+    private static final String HEADER = "vulnerability_id,target,searched,time_ms,nodes_expanded,peak_frontier,paths,allocated_bytes";
+
+    private final com.sun.management.ThreadMXBean threads = allocationCounter();
+    private final List<Row> rows = new ArrayList<>();
+    private long startNanos;
+    private long startBytes;
+
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported()) {
+            ((com.sun.management.ThreadMXBean) threads).setThreadAllocatedMemoryEnabled(true);
+            return (com.sun.management.ThreadMXBean) threads;
+        }
+        return null;
+    }
+
+    // output6.txt and output6.txt.gz get output6.stats.csv next to them
+    public static File statsFile(File reportFile) {
+        String name = reportFile.getName();
+        if (name.endsWith(".gz")) {
+            name = name.substring(0, name.length() - 3);
+        }
+        int extension = name.lastIndexOf('.');
+        return new File(reportFile.getAbsoluteFile().getParentFile(),
+                (extension > 0 ? name.substring(0, extension) : name) + ".stats.csv");
+    }
+
+    public void start() {
+        startBytes = allocatedBytes();
+        startNanos = System.nanoTime();
+    }
+
+    // search is null for a section that was not searched, e.g. copied from the previous report
+    public void stop(String vulnId, String target, SearchStats search) {
+        long nanos = System.nanoTime() - startNanos;
+        long bytes = startBytes < 0 ? -1 : allocatedBytes() - startBytes;
+        rows.add(new Row(vulnId, target, search, nanos, bytes));
+    }
+
+    private long allocatedBytes() {
+        return threads != null ? threads.getThreadAllocatedBytes(Thread.currentThread().getId()) : -1;
+    }
+
+    public void write(File file) {
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
+            writer.write(HEADER + "\n");
+            for (Row row : rows) {
+                writer.write(csv(row.vulnId) + "," + csv(row.target) + "," + (row.search != null) + ","
+                        + String.format(Locale.ROOT, "%.3f", row.nanos / 1e6) + ","
+                        + (row.search != null ? row.search.getNodesExpanded() : 0) + ","
+                        + (row.search != null ? row.search.getPeakFrontier() : 0) + ","
+                        + (row.search != null ? row.search.getPaths() : 0) + "," + row.bytes + "\n");
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public void printSlowest(int count) {
+        List<Row> slowest = new ArrayList<>(rows);
+        slowest.sort(Comparator.comparingLong((Row row) -> row.nanos).reversed());
+        System.out.println("Slowest targets:");
+        for (Row row : slowest.subList(0, Math.min(count, slowest.size()))) {
+            System.out.println(String.format("  %8.1f ms  %s  %s", row.nanos / 1e6, row.vulnId, row.target));
+        }
+    }
+
+    private static String csv(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0) {
+            return value;
+        }
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+
+    private static class Row {
+
+        private final String vulnId;
+        private final String target;
+        private final SearchStats search;
+        private final long nanos;
+        private final long bytes;
+
+        Row(String vulnId, String target, SearchStats search, long nanos, long bytes) {
+            this.vulnId = vulnId;
+            this.target = target;
+            this.search = search;
+            this.nanos = nanos;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.lmco.crt;
+
+import com.lmco.crt.graph.CallGraph;
+import com.lmco.crt.graph.SearchStats;
+import com.lmco.crt.graph.TargetLabels;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DagReportTest {
+
+    @TempDir
+    File directory;
+
+    // main calls a twice over b and c, a calls the target, and d calls the target directly
+    private static CallGraph graph() {
+        Map<String, List<String>> calls = new HashMap<>();
+        calls.put("app/Main.main([Ljava/lang/String;)V", Arrays.asList("app/B.b()V", "app/C.c()V"));
+        calls.put("app/B.b()V", Collections.singletonList("app/A.a()V"));
+        calls.put("app/C.c()V", Collections.singletonList("app/A.a()V"));
+        calls.put("app/A.a()V", Collections.singletonList("lib/T.t()V"));
+        calls.put("app/D.d()V", Collections.singletonList("lib/T.t()V"));
+        calls.put("lib/T.t()V", Collections.emptyList());
+        return CallGraph.from(calls);
+    }
+
+    private static DagReport writeAndRead(File file, DagReport.Layout layout, int maxDepth, long maxPaths)
+            throws IOException {
+        CallGraph graph = graph();
+        TargetLabels targetLabels = TargetLabels.build(graph, new int[][]{{graph.id("lib/T.t()V")}}, methodId -> true);
+        DagReport.write(file, layout, maxDepth, maxPaths, targetLabels, graph::name,
+                Collections.singletonMap("lib/T.t()V", 0),
+                Collections.singletonMap("CVE-TEST", Collections.singletonList("lib/T.t()V")));
+        return DagReport.read(file);
+    }
+
+    private static List<String> paths(DagReport report, String target, int maxDepth, long maxPaths, SearchStats stats)
+            throws IOException {
+        List<String> paths = new ArrayList<>();
+        report.forEachPath(target, maxDepth, maxPaths, (methodPath, length) -> {
+            StringBuilder path = new StringBuilder();
+            for (int i = length - 1; i >= 0; i--) {
+                path.append(report.signature(methodPath[i])).append(i > 0 ? " -> " : "");
+            }
+            paths.add(path.toString());
+        }, stats);
+        Collections.sort(paths);
+        return paths;
+    }
+
+    @Test
+    void expandsThePathsOfTheWrittenDag() throws IOException {
+        DagReport report = writeAndRead(new File(directory, "report.dag"), DagReport.Layout.ANALYZER, 64, 1000);
+
+        assertEquals(DagReport.Layout.ANALYZER, report.getLayout());
+        assertEquals(64, report.getMaxDepth());
+        assertEquals(1000, report.getMaxPaths());
+        assertEquals(Collections.singletonMap("CVE-TEST", Collections.singletonList("lib/T.t()V")), report.getSections());
+        assertEquals(Arrays.asList(
+                "app/D.d()V -> lib/T.t()V",
+                "app/Main.main([Ljava/lang/String;)V -> app/B.b()V -> app/A.a()V -> lib/T.t()V",
+                "app/Main.main([Ljava/lang/String;)V -> app/C.c()V -> app/A.a()V -> lib/T.t()V"),
+                paths(report, "lib/T.t()V", 64, 1000, new SearchStats()));
+        assertEquals(Collections.emptyList(), paths(report, "lib/Unknown.u()V", 64, 1000, new SearchStats()));
+    }
+
+    @Test
+    void recordsTheLimitsThatLeftPathsOut() throws IOException {
+        DagReport report = writeAndRead(new File(directory, "report.dag"), DagReport.Layout.ANALYZER, 3, 2);
+
+        SearchStats stats = new SearchStats();
+        assertEquals(2, paths(report, "lib/T.t()V", report.getMaxDepth(), report.getMaxPaths(), stats).size());
+        assertTrue(stats.isPathLimitReached());
+        assertTrue(stats.isDepthLimitReached());
+    }
+
+    @Test
+    void pathFinderLayoutKeepsTheTargetAloneOut() throws IOException {
+        CallGraph graph = CallGraph.from(Collections.singletonMap("lib/T.t()V", Collections.<String>emptyList()));
+        TargetLabels targetLabels = TargetLabels.build(graph, new int[][]{{graph.id("lib/T.t()V")}}, methodId -> true);
+        File file = new File(directory, "report.dag");
+        DagReport.write(file, DagReport.Layout.PATH_FINDER, 64, 1000, targetLabels, graph::name,
+                Collections.singletonMap("lib/T.t()V", 0),
+                Collections.singletonMap("CVE-TEST", Collections.singletonList("lib/T.t()V")));
+        DagReport report = DagReport.read(file);
+
+        assertEquals(DagReport.Layout.PATH_FINDER, report.getLayout());
+        assertEquals(Collections.emptyList(), paths(report, "lib/T.t()V", 64, 1000, new SearchStats()));
+    }
+}
@@ -0,0 +1,88 @@
+package com.lmco.crt;
+
+import com.lmco.crt.tools.SyntheticJarGenerator;
+import com.lmco.crt.util.TargetStats;
+import com.lmco.crt.util.Utilities;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IncrementalReportTest {
+
+    @TempDir
+    File directory;
+
+    private File generateJar() throws IOException {
+        SyntheticJarGenerator generator = new SyntheticJarGenerator();
+        generator.setClasses(200);
+        generator.setTargets(5);
+        File jarFile = new File(directory, "gen.jar");
+        generator.generate(jarFile, new File(directory, "gen.csv"));
+        return jarFile;
+    }
+
+    private static MethodReachabilityAnalyzer3 analyzer(boolean compressed) {
+        MethodReachabilityAnalyzer3 analyzer = new MethodReachabilityAnalyzer3();
+        analyzer.setParallelism(2);
+        analyzer.setSearchLimits(64, 100);
+        analyzer.setCompressedReport(compressed);
+        return analyzer;
+    }
+
+    // The generated targets feed, resolved as updateVulnerableMethods resolves it
+    private static Map<String, List<String>> targetMap(MethodReachabilityAnalyzer3 analyzer, File jarFile) {
+        Map<String, List<String>> targetMap = new LinkedHashMap<>();
+        Utilities.loadTargets(new File(jarFile.getParentFile(), "gen.csv").getPath()).forEach((vulnId, targets) -> {
+            List<String> methods = new ArrayList<>();
+            for (String target : targets) {
+                methods.addAll(analyzer.resolveTarget(target));
+            }
+            targetMap.put(vulnId, methods);
+        });
+        return targetMap;
+    }
+
+    private void assertUnchangedJarGivesTheSameReport(boolean compressed) throws IOException {
+        File jarFile = generateJar();
+        File reportFile = new File(directory, compressed ? "output6.txt.gz" : "output6.txt");
+        File snapshotFile = new File(directory, "output6.snapshot");
+
+        MethodReachabilityAnalyzer3 first = analyzer(compressed);
+        first.analyzeJar(jarFile);
+        assertTrue(first.writePathsToFile(targetMap(first, jarFile), reportFile));
+        first.getSnapshot().save(snapshotFile);
+        byte[] firstReport = Files.readAllBytes(reportFile.toPath());
+
+        MethodReachabilityAnalyzer3 second = analyzer(compressed);
+        second.setPreviousSnapshot(AnalysisSnapshot.load(snapshotFile));
+        second.analyzeJar(jarFile);
+        assertTrue(second.writePathsToFile(targetMap(second, jarFile), reportFile));
+
+        assertArrayEquals(firstReport, Files.readAllBytes(reportFile.toPath()));
+        // Every section was copied from the previous report instead of searched again
+        List<String> stats = Files.readAllLines(TargetStats.statsFile(reportFile).toPath());
+        assertTrue(stats.size() > 1);
+        for (String row : stats.subList(1, stats.size())) {
+            assertFalse(row.contains(",true,"), row);
+        }
+    }
+
+    @Test
+    void unchangedJarGivesTheSameReport() throws IOException {
+        assertUnchangedJarGivesTheSameReport(false);
+    }
+
+    @Test
+    void unchangedJarGivesTheSameCompressedReport() throws IOException {
+        assertUnchangedJarGivesTheSameReport(true);
+    }
+}
@@ -0,0 +1,99 @@
+package com.lmco.crt;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReportWriterTest {
+
+    @TempDir
+    File directory;
+
+    private final long[] section = new long[2];
+
+    // A section longer than one batch, so it is deflated in several pieces
+    private static String sectionText() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            text.append("CVE-").append(i % 97).append(",path ").append(i).append(" -> caller ").append(i * 31)
+                    .append('\n');
+        }
+        return text.toString();
+    }
+
+    private File writePrevious(boolean compressed) throws IOException {
+        File file = new File(directory, compressed ? "previous.txt.gz" : "previous.txt");
+        try (ReportWriter writer = new ReportWriter(file, compressed)) {
+            writer.write("Previous header\n");
+            writer.beginSection();
+            writer.write(sectionText());
+            writer.endSection((offset, length) -> {
+                section[0] = offset;
+                section[1] = length;
+            });
+            writer.write("Previous tail\n");
+        }
+        return file;
+    }
+
+    private File writeWithCopy(File previous, boolean compressed) throws IOException {
+        File file = new File(directory, compressed ? "report.txt.gz" : "report.txt");
+        try (FileChannel source = FileChannel.open(previous.toPath(), StandardOpenOption.READ);
+             ReportWriter writer = new ReportWriter(file, compressed)) {
+            writer.write("New header\n");
+            writer.copy(source, section[0], section[1]);
+            writer.write("New tail\n");
+        }
+        return file;
+    }
+
+    private static String read(File file, boolean compressed) throws IOException {
+        try (InputStream in = compressed ? new GZIPInputStream(new FileInputStream(file)) : new FileInputStream(file)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            for (int n; (n = in.read(buffer)) > 0; ) {
+                out.write(buffer, 0, n);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test
+    void copiedGzipMembersDecodeToTheSameText() throws IOException {
+        File previous = writePrevious(true);
+        assertEquals("Previous header\n" + sectionText() + "Previous tail\n", read(previous, true));
+
+        File report = writeWithCopy(previous, true);
+        assertEquals("New header\n" + sectionText() + "New tail\n", read(report, true));
+    }
+
+    @Test
+    void copiedPlainSectionsKeepTheirBytes() throws IOException {
+        File previous = writePrevious(false);
+        assertEquals("Previous header\n".length(), section[0]);
+        assertEquals(sectionText().length(), section[1]);
+
+        File report = writeWithCopy(previous, false);
+        assertEquals("New header\n" + sectionText() + "New tail\n", read(report, false));
+    }
+
+    @Test
+    void copyPastTheEndOfTheSourceFails() throws IOException {
+        File previous = writePrevious(true);
+        section[1] = Files.size(previous.toPath()) - section[0] + 1;
+
+        assertThrows(IOException.class, () -> writeWithCopy(previous, true));
+    }
+}